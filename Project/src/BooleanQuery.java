@@ -0,0 +1,836 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * A parsed Boolean query such as {@code cats AND (dogs OR birds) AND NOT fish}. The operators must be
+ * written in upper case. {@code NOT} binds tightest, then {@code AND}, then {@code OR}, and words
+ * next to each other without an operator are combined with {@code OR}, the same as a regular search.
+ * Every word is cleaned and stemmed the same way as the text it is searched in.
+ *
+ * A query is matched against the sorted location ids of each word's postings. A conjunction starts
+ * from the child with the fewest locations and gallops through the others, so an {@code AND} costs
+ * about as much as its rarest word. Matching locations are then scored like a regular search over the
+ * words that are not negated, and a location only counts as a result if it has at least one of them.
+ *
+ * @author Sophia
+ *
+ */
+public class BooleanQuery {
+
+	/** Splits a query line into parentheses and words. */
+	private static final Pattern TOKEN = Pattern.compile("[()]|[^\\s()]+");
+
+	/** The root of the query. */
+	private final Node root;
+
+	/**
+	 * Initializes a query.
+	 *
+	 * @param root the root of the query
+	 */
+	private BooleanQuery(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Checks whether a query line uses any Boolean operators or parentheses.
+	 *
+	 * @param line the query line
+	 * @return {@code true} if the line should be parsed as a Boolean query
+	 */
+	public static boolean isBoolean(String line) {
+		Matcher matcher = TOKEN.matcher(line);
+		while (matcher.find()) {
+			switch (matcher.group()) {
+				case "AND":
+				case "OR":
+				case "NOT":
+				case "(":
+				case ")":
+					return true;
+				default:
+					break;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Parses a query line. Missing closing parentheses are added, extra ones are ignored, and operators
+	 * without anything to work on are dropped.
+	 *
+	 * @param line the query line
+	 * @return the query, or {@code null} if the line has no words
+	 */
+	public static BooleanQuery parse(String line) {
+		ArrayList<String> tokens = new ArrayList<>();
+		Matcher matcher = TOKEN.matcher(line);
+		while (matcher.find()) {
+			tokens.add(matcher.group());
+		}
+		Parser parser = new Parser(tokens);
+		Node root = parser.parse();
+		return root == null ? null : new BooleanQuery(root);
+	}
+
+	/**
+	 * Returns the words that are not negated, which are the words results are scored by.
+	 *
+	 * @return the sorted words
+	 */
+	public Set<String> terms() {
+		TreeSet<String> terms = new TreeSet<>();
+		root.terms(terms, false);
+		return terms;
+	}
+
+	/**
+	 * Checks whether the query only joins words with {@code OR}, which finds and scores the same
+	 * locations as a plain search for those words.
+	 *
+	 * @return {@code true} if the query has no {@code AND} and no {@code NOT}
+	 */
+	public boolean isPlain() {
+		if (root instanceof Term) {
+			return true;
+		}
+		if (!(root instanceof Or)) {
+			return false;
+		}
+		for (Node child : ((Or) root).children) {
+			if (!(child instanceof Term)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the query with stemmed words, the parts of each operator sorted and without repeats, and
+	 * only the parentheses it needs, which is the same however the parts are ordered, repeated or
+	 * grouped.
+	 */
+	@Override
+	public String toString() {
+		return root.toString();
+	}
+
+	/**
+	 * Finds and scores the locations that match the query.
+	 *
+	 * @param source   the postings to search
+	 * @param exact    whether words must match exactly or may match as a prefix
+	 * @param location the location for each id
+	 * @param count    the total word count for each id
+	 * @return the sorted results
+	 */
+	List<InvertedIndex.QueryResult> search(Source source, boolean exact, IntFunction<String> location,
+			IntUnaryOperator count) {
+		Evaluation evaluation = new Evaluation(source, exact);
+		Postings matched = root.evaluate(evaluation);
+
+		// every word is looked up before the accumulator is taken, since a source may search with it
+		ArrayList<Postings> scored = new ArrayList<>();
+		if (matched.size() > 0) {
+			for (String term : terms()) {
+				scored.add(evaluation.term(term));
+			}
+		}
+
+		ScoreAccumulator accumulator = ScoreAccumulator.get(source.locations());
+		for (Postings postings : scored) {
+			int cursor = 0;
+			for (int i = 0; i < matched.size(); i++) {
+				int id = matched.id(i);
+				cursor = gallop(postings, cursor, id);
+				if (cursor == postings.size()) {
+					break;
+				}
+				if (postings.id(cursor) == id) {
+					accumulator.add(id, postings.frequency(cursor));
+				}
+			}
+		}
+		return accumulator.results(Integer.MAX_VALUE, location, count);
+	}
+
+	/**
+	 * Finds the first index at or after a starting point whose id is not less than a target. The
+	 * distance to the answer is found by doubling the step, and then searched in, so skipping far ahead
+	 * is cheap and small steps stay small.
+	 *
+	 * @param postings the postings
+	 * @param from     the index to start at
+	 * @param id       the target id
+	 * @return the index, or {@link Postings#size()} if every remaining id is smaller
+	 */
+	static int gallop(Postings postings, int from, int id) {
+		int size = postings.size();
+		if (from >= size || postings.id(from) >= id) {
+			return from;
+		}
+
+		int low = from;
+		int high = from + 1;
+		int step = 1;
+		while (high < size && postings.id(high) < id) {
+			low = high;
+			step <<= 1;
+			high = from + step;
+		}
+		high = Math.min(high, size);
+
+		// the id at low is too small, and the answer is somewhere after it up to high
+		while (low + 1 < high) {
+			int mid = (low + high) >>> 1;
+			if (postings.id(mid) < id) {
+				low = mid;
+			} else {
+				high = mid;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Intersects postings, starting from the one with the fewest locations.
+	 *
+	 * @param lists the postings, which are reordered
+	 * @return the ids in every list
+	 */
+	private static Postings and(List<Postings> lists) {
+		lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+		Postings rarest = lists.get(0);
+		int[] cursors = new int[lists.size()];
+		int[] ids = new int[rarest.size()];
+		int size = 0;
+
+		candidates: for (int i = 0; i < rarest.size(); i++) {
+			int id = rarest.id(i);
+			for (int j = 1; j < lists.size(); j++) {
+				Postings other = lists.get(j);
+				cursors[j] = gallop(other, cursors[j], id);
+				if (cursors[j] == other.size()) {
+					break candidates;
+				}
+				if (other.id(cursors[j]) != id) {
+					continue candidates;
+				}
+			}
+			ids[size++] = id;
+		}
+		return new ArrayPostings(ids, null, size);
+	}
+
+	/**
+	 * Removes the ids in one list from another.
+	 *
+	 * @param base    the ids to keep
+	 * @param removed the ids to remove
+	 * @return the ids in {@code base} that are not in {@code removed}
+	 */
+	private static Postings andNot(Postings base, Postings removed) {
+		int[] ids = new int[base.size()];
+		int size = 0;
+		int cursor = 0;
+		for (int i = 0; i < base.size(); i++) {
+			int id = base.id(i);
+			cursor = gallop(removed, cursor, id);
+			if (cursor == removed.size() || removed.id(cursor) != id) {
+				ids[size++] = id;
+			}
+		}
+		return new ArrayPostings(ids, null, size);
+	}
+
+	/**
+	 * Combines postings in rounds of pairs, so each id is only copied a few times even when a prefix
+	 * matches many words.
+	 *
+	 * @param lists the postings
+	 * @return the ids in any list, or {@code null} if there are no lists
+	 */
+	private static Postings or(List<Postings> lists) {
+		List<Postings> round = lists;
+		while (round.size() > 1) {
+			ArrayList<Postings> merged = new ArrayList<>((round.size() + 1) / 2);
+			for (int i = 0; i + 1 < round.size(); i += 2) {
+				merged.add(or(round.get(i), round.get(i + 1)));
+			}
+			if (round.size() % 2 == 1) {
+				merged.add(round.get(round.size() - 1));
+			}
+			round = merged;
+		}
+		return round.isEmpty() ? null : round.get(0);
+	}
+
+	/**
+	 * Combines two postings, adding up the frequencies of ids that are in both.
+	 *
+	 * @param a the first postings
+	 * @param b the second postings
+	 * @return the ids in either
+	 */
+	static Postings or(Postings a, Postings b) {
+		int[] ids = new int[a.size() + b.size()];
+		int[] frequencies = new int[ids.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.size() || j < b.size()) {
+			if (j == b.size() || (i < a.size() && a.id(i) < b.id(j))) {
+				ids[size] = a.id(i);
+				frequencies[size++] = a.frequency(i++);
+			} else if (i == a.size() || b.id(j) < a.id(i)) {
+				ids[size] = b.id(j);
+				frequencies[size++] = b.frequency(j++);
+			} else {
+				ids[size] = a.id(i);
+				frequencies[size++] = a.frequency(i++) + b.frequency(j++);
+			}
+		}
+		return new ArrayPostings(ids, frequencies, size);
+	}
+
+	/**
+	 * The location ids and word frequencies of a word or of part of a query, sorted by id.
+	 */
+	interface Postings {
+
+		/**
+		 * Number of locations
+		 *
+		 * @return the number of locations
+		 */
+		int size();
+
+		/**
+		 * Returns the location id at an index.
+		 *
+		 * @param i the index
+		 * @return the location id
+		 */
+		int id(int i);
+
+		/**
+		 * Returns how many times the word was found in the location at an index.
+		 *
+		 * @param i the index
+		 * @return the frequency, or 0 for the result of a query
+		 */
+		int frequency(int i);
+	}
+
+	/**
+	 * Where a query gets its postings from.
+	 */
+	interface Source {
+
+		/**
+		 * Returns the postings of a word.
+		 *
+		 * @param word the word
+		 * @return the postings, or {@code null} if the word is not in the index
+		 */
+		Postings word(String word);
+
+		/**
+		 * Returns the postings of every word that starts with a prefix.
+		 *
+		 * @param prefix the prefix
+		 * @return the postings of each matching word
+		 */
+		List<Postings> prefix(String prefix);
+
+		/**
+		 * Number of locations
+		 *
+		 * @return one more than the largest location id
+		 */
+		int locations();
+	}
+
+	/**
+	 * Postings held in arrays.
+	 */
+	static class ArrayPostings implements Postings {
+
+		/** No locations. */
+		static final ArrayPostings EMPTY = new ArrayPostings(new int[0], null, 0);
+
+		/** The sorted location ids. */
+		private final int[] ids;
+
+		/** The frequency for each id, or {@code null} if they are all 0. */
+		private final int[] frequencies;
+
+		/** The number of ids. */
+		private final int size;
+
+		/**
+		 * Initializes postings from arrays that are already sorted by id.
+		 *
+		 * @param ids         the sorted location ids
+		 * @param frequencies the frequency for each id, or {@code null} if they are all 0
+		 * @param size        the number of ids to use
+		 */
+		ArrayPostings(int[] ids, int[] frequencies, int size) {
+			this.ids = ids;
+			this.frequencies = frequencies;
+			this.size = size;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int id(int i) {
+			return ids[i];
+		}
+
+		@Override
+		public int frequency(int i) {
+			return frequencies == null ? 0 : frequencies[i];
+		}
+	}
+
+	/**
+	 * The state of one search, which looks up each word only once.
+	 */
+	private static class Evaluation {
+
+		/** Where the postings come from. */
+		private final Source source;
+
+		/** Whether words must match exactly. */
+		private final boolean exact;
+
+		/** The postings of the words looked up so far. */
+		private final HashMap<String, Postings> terms;
+
+		/**
+		 * Initializes a search.
+		 *
+		 * @param source where the postings come from
+		 * @param exact  whether words must match exactly
+		 */
+		public Evaluation(Source source, boolean exact) {
+			this.source = source;
+			this.exact = exact;
+			this.terms = new HashMap<>();
+		}
+
+		/**
+		 * Returns the postings of a word, or of every word starting with it for a partial search.
+		 *
+		 * @param word the word
+		 * @return the postings
+		 */
+		public Postings term(String word) {
+			Postings postings = terms.get(word);
+			if (postings == null) {
+				postings = exact ? source.word(word) : or(source.prefix(word));
+				if (postings == null) {
+					postings = ArrayPostings.EMPTY;
+				}
+				terms.put(word, postings);
+			}
+			return postings;
+		}
+
+		/**
+		 * Returns every location id.
+		 *
+		 * @return the postings of every location
+		 */
+		public Postings all() {
+			int[] ids = new int[source.locations()];
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = i;
+			}
+			return new ArrayPostings(ids, null, ids.length);
+		}
+	}
+
+	/**
+	 * A part of a query.
+	 */
+	private abstract static class Node {
+
+		/**
+		 * Finds the locations that match this part of the query.
+		 *
+		 * @param evaluation the search
+		 * @return the matching location ids
+		 */
+		public abstract Postings evaluate(Evaluation evaluation);
+
+		/**
+		 * Adds the words that are not negated.
+		 *
+		 * @param terms   the words found so far
+		 * @param negated whether this part is negated
+		 */
+		public abstract void terms(Set<String> terms, boolean negated);
+	}
+
+	/**
+	 * A single stemmed word.
+	 */
+	private static class Term extends Node {
+
+		/** The stemmed word. */
+		private final String word;
+
+		/**
+		 * Initializes a word.
+		 *
+		 * @param word the stemmed word
+		 */
+		public Term(String word) {
+			this.word = word;
+		}
+
+		@Override
+		public Postings evaluate(Evaluation evaluation) {
+			return evaluation.term(word);
+		}
+
+		@Override
+		public void terms(Set<String> terms, boolean negated) {
+			if (!negated) {
+				terms.add(word);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return word;
+		}
+	}
+
+	/**
+	 * Locations that do not match a part of the query.
+	 */
+	private static class Not extends Node {
+
+		/** The negated part. */
+		private final Node child;
+
+		/**
+		 * Initializes a negation.
+		 *
+		 * @param child the negated part
+		 */
+		public Not(Node child) {
+			this.child = child;
+		}
+
+		@Override
+		public Postings evaluate(Evaluation evaluation) {
+			return andNot(evaluation.all(), child.evaluate(evaluation));
+		}
+
+		@Override
+		public void terms(Set<String> terms, boolean negated) {
+			child.terms(terms, !negated);
+		}
+
+		@Override
+		public String toString() {
+			return child instanceof Term || child instanceof Not ? "NOT " + child : "NOT (" + child + ")";
+		}
+	}
+
+	/**
+	 * Locations that match every part.
+	 */
+	private static class And extends Node {
+
+		/** The parts. */
+		private final List<Node> children;
+
+		/**
+		 * Initializes a conjunction.
+		 *
+		 * @param children the parts
+		 */
+		public And(List<Node> children) {
+			this.children = children;
+		}
+
+		/**
+		 * Intersects the parts that are not negated first, then removes the negated parts from what is
+		 * left, so a negated word never has to be turned into the list of every other location.
+		 */
+		@Override
+		public Postings evaluate(Evaluation evaluation) {
+			ArrayList<Postings> included = new ArrayList<>();
+			ArrayList<Node> excluded = new ArrayList<>();
+			for (Node child : children) {
+				if (child instanceof Not) {
+					excluded.add(((Not) child).child);
+				} else {
+					included.add(child.evaluate(evaluation));
+				}
+			}
+
+			Postings matched = included.isEmpty() ? evaluation.all() : and(included);
+			for (Node child : excluded) {
+				if (matched.size() == 0) {
+					break;
+				}
+				matched = andNot(matched, child.evaluate(evaluation));
+			}
+			return matched;
+		}
+
+		@Override
+		public void terms(Set<String> terms, boolean negated) {
+			for (Node child : children) {
+				child.terms(terms, negated);
+			}
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			for (Node child : children) {
+				if (builder.length() > 0) {
+					builder.append(" AND ");
+				}
+				builder.append(child instanceof Or ? "(" + child + ")" : child);
+			}
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Locations that match any part.
+	 */
+	private static class Or extends Node {
+
+		/** The parts. */
+		private final List<Node> children;
+
+		/**
+		 * Initializes a disjunction.
+		 *
+		 * @param children the parts
+		 */
+		public Or(List<Node> children) {
+			this.children = children;
+		}
+
+		@Override
+		public Postings evaluate(Evaluation evaluation) {
+			ArrayList<Postings> lists = new ArrayList<>(children.size());
+			for (Node child : children) {
+				lists.add(child.evaluate(evaluation));
+			}
+			return or(lists);
+		}
+
+		@Override
+		public void terms(Set<String> terms, boolean negated) {
+			for (Node child : children) {
+				child.terms(terms, negated);
+			}
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			for (Node child : children) {
+				if (builder.length() > 0) {
+					builder.append(" OR ");
+				}
+				builder.append(child);
+			}
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Recursive descent parser for query lines.
+	 */
+	private static class Parser {
+
+		/** The tokens of the line. */
+		private final List<String> tokens;
+
+		/** The stemmer for the words of the line. */
+		private final Stemmer stemmer;
+
+		/** The index of the next token. */
+		private int next;
+
+		/**
+		 * Initializes a parser.
+		 *
+		 * @param tokens the tokens of the line
+		 */
+		public Parser(List<String> tokens) {
+			this.tokens = tokens;
+			this.stemmer = StemCache.shared();
+			this.next = 0;
+		}
+
+		/**
+		 * Parses the whole line, skipping any closing parentheses that were never opened.
+		 *
+		 * @return the root of the query, or {@code null} if it has no words
+		 */
+		public Node parse() {
+			ArrayList<Node> parts = new ArrayList<>();
+			while (next < tokens.size()) {
+				Node part = or();
+				if (part != null) {
+					parts.add(part);
+				}
+				if (next < tokens.size() && tokens.get(next).equals(")")) {
+					next++;
+				}
+			}
+			return combine(parts, false);
+		}
+
+		/**
+		 * Parses operands joined by {@code OR}, or by nothing at all.
+		 *
+		 * @return the parsed part, or {@code null} if it has no words
+		 */
+		private Node or() {
+			ArrayList<Node> parts = new ArrayList<>();
+			while (next < tokens.size() && !tokens.get(next).equals(")")) {
+				if (tokens.get(next).equals("OR")) {
+					next++;
+					continue;
+				}
+				Node part = and();
+				if (part != null) {
+					parts.add(part);
+				}
+			}
+			return combine(parts, false);
+		}
+
+		/**
+		 * Parses operands joined by {@code AND}.
+		 *
+		 * @return the parsed part, or {@code null} if it has no words
+		 */
+		private Node and() {
+			ArrayList<Node> parts = new ArrayList<>();
+			Node part = not();
+			if (part != null) {
+				parts.add(part);
+			}
+			while (next < tokens.size() && tokens.get(next).equals("AND")) {
+				next++;
+				part = not();
+				if (part != null) {
+					parts.add(part);
+				}
+			}
+			return combine(parts, true);
+		}
+
+		/**
+		 * Parses an operand that may be negated.
+		 *
+		 * @return the parsed part, or {@code null} if it has no words
+		 */
+		private Node not() {
+			if (next < tokens.size() && tokens.get(next).equals("NOT")) {
+				next++;
+				Node child = not();
+				if (child instanceof Not) {
+					// a double negation cancels out
+					return ((Not) child).child;
+				}
+				return child == null ? null : new Not(child);
+			}
+			return operand();
+		}
+
+		/**
+		 * Parses a word or a part of the query in parentheses.
+		 *
+		 * @return the parsed part, or {@code null} if it has no words
+		 */
+		private Node operand() {
+			if (next >= tokens.size()) {
+				return null;
+			}
+			String token = tokens.get(next++);
+			switch (token) {
+				case "(":
+					Node inner = or();
+					if (next < tokens.size()) {
+						next++; // the closing parenthesis
+					}
+					return inner;
+				case ")":
+					next--; // leave it for the caller
+					return null;
+				case "AND":
+				case "OR":
+					return null;
+				default:
+					ArrayList<Node> words = new ArrayList<>();
+					for (String word : TextFileStemmer.listStems(token, stemmer)) {
+						words.add(new Term(word));
+					}
+					return combine(words, false);
+			}
+		}
+
+		/**
+		 * Combines parts with an operator, leaving out the operator if there is only one part. Parts
+		 * already joined by the same operator are opened up, and the parts are sorted by how they are
+		 * written with repeats left out.
+		 *
+		 * @param parts the parts
+		 * @param and   whether to combine them with {@code AND} instead of {@code OR}
+		 * @return the combined part, or {@code null} if there are no parts
+		 */
+		private static Node combine(List<Node> parts, boolean and) {
+			TreeMap<String, Node> unique = new TreeMap<>();
+			for (Node part : parts) {
+				List<Node> inner = List.of(part);
+				if (and && part instanceof And) {
+					inner = ((And) part).children;
+				} else if (!and && part instanceof Or) {
+					inner = ((Or) part).children;
+				}
+				for (Node node : inner) {
+					unique.putIfAbsent(node.toString(), node);
+				}
+			}
+
+			if (unique.isEmpty()) {
+				return null;
+			}
+			if (unique.size() == 1) {
+				return unique.firstEntry().getValue();
+			}
+			ArrayList<Node> sorted = new ArrayList<>(unique.values());
+			return and ? new And(sorted) : new Or(sorted);
+		}
+	}
+
+}
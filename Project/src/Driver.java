@@ -46,9 +46,10 @@ public class Driver {
 		InvertedIndexBuilder builder;
 		QueryBuilderInterface queryBuilder;
 		int threads;
-		ThreadSafeInvertedIndex threadSafe = new ThreadSafeInvertedIndex();
+		ThreadSafeInvertedIndex threadSafe;
 
 		WorkQueue queue = null;
+		QueryCache cache;
 
 		URL url = null;
 		int limit = 50;
@@ -70,15 +71,50 @@ public class Driver {
 			}
 			queue = new WorkQueue(threads);
 
+			// the search server keeps crawling while it searches, so it gets an index built from segments
+			if (parser.hasFlag("-port")) {
+				threadSafe = new SegmentedInvertedIndex(queue);
+			} else if (parser.hasFlag("-shards")) {
+				int shards;
+				try {
+					shards = Integer.parseInt(parser.getString("-shards"));
+				} catch (NumberFormatException e) {
+					log.error("Invalid shards value. Must be an integer.");
+					shards = ShardedInvertedIndex.DEFAULT_SHARDS;
+				}
+				threadSafe = new ShardedInvertedIndex(shards > 0 ? shards : ShardedInvertedIndex.DEFAULT_SHARDS);
+			} else {
+				threadSafe = new ThreadSafeInvertedIndex();
+			}
+
 			invertedIndex = threadSafe;
-			builder = new MultiThreadedIndexBuilder(threadSafe, queue);
+			builder = new MultiThreadedIndexBuilder(threadSafe, queue, parser.hasFlag("-reduce"));
 
-			queryBuilder = new MultiThreadedQueryBuilder(threadSafe, queue);
+			cache = new QueryCache(threadSafe, cacheCapacity(parser), true);
+			queryBuilder = new MultiThreadedQueryBuilder(threadSafe, queue, cache, streamWriter(parser));
 
 		} else {
 			invertedIndex = new InvertedIndex();
 			builder = new InvertedIndexBuilder(invertedIndex);
-			queryBuilder = new QueryBuilder(invertedIndex);
+			cache = new QueryCache(invertedIndex, cacheCapacity(parser));
+			queryBuilder = new QueryBuilder(invertedIndex, cache, streamWriter(parser));
+		}
+
+		if (parser.hasFlag("-prefixBudget")) {
+			try {
+				invertedIndex.setPrefixBudget(Long.parseLong(parser.getString("-prefixBudget")) << 20);
+			} catch (NumberFormatException e) {
+				log.error("Invalid prefix budget. Must be a number of megabytes.");
+			}
+		}
+
+		if (parser.hasFlag("-loadIndex")) {
+			Path loadPath = parser.getPath("-loadIndex", Path.of("index.bin"));
+			try {
+				invertedIndex.load(loadPath);
+			} catch (IOException e) {
+				log.error("Unable to load the index from path " + loadPath + ": " + e.getMessage());
+			}
 		}
 
 		if (parser.hasFlag("-url")) {
@@ -110,6 +146,27 @@ public class Driver {
 			}
 		}
 
+		// no more writes are expected, so compact the index for reading
+		FrozenIndex frozen = invertedIndex.freeze();
+
+		if (parser.hasFlag("-mmap")) {
+			Path mmapPath = parser.getPath("-mmap", Path.of("index.seg"));
+			try {
+				frozen = invertedIndex.freeze(mmapPath);
+			} catch (IOException e) {
+				log.error("Unable to map the index to path " + mmapPath);
+			}
+		}
+
+		if (parser.hasFlag("-saveIndex")) {
+			Path savePath = parser.getPath("-saveIndex", Path.of("index.bin"));
+			try {
+				frozen.write(savePath);
+			} catch (IOException e) {
+				log.error("Unable to save the index to path " + savePath);
+			}
+		}
+
 		if (parser.hasFlag("-index")) {
 			Path outputPath = parser.getPath("-index", Path.of("index.json"));
 			try {
@@ -128,13 +185,23 @@ public class Driver {
 			}
 		}
 
+		if (parser.hasFlag("-stats")) {
+			System.out.printf("Postings: %d, estimated bytes per posting: %.2f%n", invertedIndex.postings(),
+					invertedIndex.bytesPerPosting());
+			System.out.printf("Words: %d, estimated dictionary bytes: %d%n", frozen.size(), frozen.dictionaryBytes());
+		}
+
 		if (parser.hasFlag("-query")) {
 			Path queryPath = parser.getPath("-query");
 			if (queryPath == null) {
 				log.debug("Missing query path!");
 			} else {
 				try {
-					queryBuilder.parseQueries(queryPath, parser.hasFlag("-exact"));
+					if (parser.hasFlag("-batch")) {
+						queryBuilder.parseBatch(queryPath, parser.hasFlag("-exact"));
+					} else {
+						queryBuilder.parseQueries(queryPath, parser.hasFlag("-exact"));
+					}
 				} catch (IOException e) {
 					log.error("Unable to write to path " + queryPath.toString());
 				}
@@ -152,6 +219,14 @@ public class Driver {
 			}
 		}
 
+		if (parser.hasFlag("-stats") && parser.hasFlag("-query")) {
+			System.out.println(cache);
+		}
+
+		if (parser.hasFlag("-stats")) {
+			System.out.println(StemCache.shared());
+		}
+
 		int number;
 
 		if (parser.hasFlag("-port")) {
@@ -178,7 +253,7 @@ public class Driver {
 				ContextHandler contextHandler = new ContextHandler("/favicon.ico");
 				contextHandler.setHandler(defaultHandler);
 
-				SearchServlet searchServlet = new SearchServlet(queryBuilder, invertedIndex, builder);
+				SearchServlet searchServlet = new SearchServlet(queryBuilder, invertedIndex, builder, cache);
 				ServletHolder servletHolder = new ServletHolder(searchServlet);
 
 				ServletHandler servletHandler = new ServletHandler();
@@ -204,4 +279,42 @@ public class Driver {
 		System.out.printf("Elapsed: %f seconds%n", seconds);
 	}
 
+	/**
+	 * Reads how many search results to cache from the {@code -cache} flag.
+	 *
+	 * @param parser the command-line arguments
+	 * @return the number of entries, which is 0 to turn the cache off
+	 */
+	private static int cacheCapacity(ArgumentParser parser) {
+		if (!parser.hasFlag("-cache")) {
+			return QueryCache.DEFAULT_CAPACITY;
+		}
+		try {
+			return Integer.parseInt(parser.getString("-cache", String.valueOf(QueryCache.DEFAULT_CAPACITY)));
+		} catch (NumberFormatException e) {
+			log.error("Invalid cache value. Must be an integer.");
+			return QueryCache.DEFAULT_CAPACITY;
+		}
+	}
+
+	/**
+	 * Creates the writer for the {@code -stream} flag, which may give the most results to write for
+	 * each query.
+	 *
+	 * @param parser the command-line arguments
+	 * @return the writer, or {@code null} to keep every result in memory until they are written
+	 */
+	private static StreamingResultWriter streamWriter(ArgumentParser parser) {
+		if (!parser.hasFlag("-stream")) {
+			return null;
+		}
+		try {
+			int k = Integer.parseInt(parser.getString("-stream", String.valueOf(Integer.MAX_VALUE)));
+			return new StreamingResultWriter(k, StreamingResultWriter.DEFAULT_BUFFER);
+		} catch (NumberFormatException e) {
+			log.error("Invalid stream value. Must be an integer.");
+			return new StreamingResultWriter();
+		}
+	}
+
 }
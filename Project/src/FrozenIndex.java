@@ -0,0 +1,1544 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * An immutable, read-optimized copy of an {@link InvertedIndex}. The words are kept in a front-coded
+ * {@link TermDictionary} and the postings of every word are laid out back to back in flat arrays, so
+ * a search is a dictionary lookup followed by a scan over primitive arrays. Location ids are
+ * renumbered so that they sort the same way as the location strings, which means postings are
+ * already in output order.
+ *
+ * Since nothing in this class ever changes after construction, it is safe to search from any number
+ * of threads without locking.
+ *
+ * A frozen index can be written to a file with {@link #write(Path)} and served straight from that
+ * file with {@link #map(Path)}. A mapped index keeps only the location names on the heap; the
+ * dictionary and postings are read through the page cache.
+ *
+ * @author Sophia
+ *
+ */
+public class FrozenIndex {
+
+	/** The first four bytes of every index file, "SSIX". */
+	public static final int MAGIC = 0x53534958;
+
+	/** The version of the file format written by {@link #write(Path)}. */
+	public static final int VERSION = 1;
+
+	/** The number of bytes before the first section of an index file. */
+	private static final int HEADER_BYTES = 32;
+
+	/** The fewest postings a search has to read before {@link #parallelSearch} splits it up. */
+	private static final int PARALLEL_POSTINGS = 1 << 16;
+
+	/** The words, sorted; the id of a word in the dictionary is its index into {@link #offsets}. */
+	private final TermDictionary words;
+
+	/** Where the postings for each word start; the postings of word {@code w} end at {@code w + 1}. */
+	private final IntBuffer offsets;
+
+	/** The location id of every posting. */
+	private final IntBuffer ids;
+
+	/** How many times the word was found in the location of every posting. */
+	private final IntBuffer frequencies;
+
+	/** Where the encoded positions of every posting start. */
+	private final IntBuffer positionOffsets;
+
+	/** The positions of every posting, delta-encoded as variable-byte integers. */
+	private final ByteBuffer positions;
+
+	/** The locations, sorted, so the id of a location is its rank. */
+	private final String[] locations;
+
+	/** The word count of every location. */
+	private final IntBuffer counts;
+
+	/** The merged match counts of the short prefixes searched the most. */
+	private final PrefixTables prefixes;
+
+	/**
+	 * The float bits of the score bound of each word, or 0 if it has not been worked out, see
+	 * {@link #maxScore(int)}
+	 */
+	private volatile int[] bounds;
+
+	/** Finds the words matching a wildcard pattern, or {@code null} until the first wildcard search. */
+	private volatile KGramIndex grams;
+
+	/**
+	 * Compacts the data of an inverted index into a frozen index.
+	 *
+	 * @param index      the postings of each word
+	 * @param dictionary the locations the postings refer to
+	 * @param counts     the word count of each location id
+	 */
+	FrozenIndex(TreeMap<String, PostingList> index, LocationDictionary dictionary, int[] counts) {
+		// renumber the locations in sorted order
+		int locationCount = dictionary.size();
+		Integer[] order = new Integer[locationCount];
+		for (int i = 0; i < locationCount; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> dictionary.get(a).compareTo(dictionary.get(b)));
+
+		this.locations = new String[locationCount];
+		int[] sortedCounts = new int[locationCount];
+		int[] ranks = new int[locationCount];
+		for (int rank = 0; rank < locationCount; rank++) {
+			locations[rank] = dictionary.get(order[rank]);
+			sortedCounts[rank] = counts[order[rank]];
+			ranks[order[rank]] = rank;
+		}
+
+		int postings = 0;
+		for (PostingList list : index.values()) {
+			postings += list.size();
+		}
+
+		int[] offsets = new int[index.size() + 1];
+		int[] ids = new int[postings];
+		int[] frequencies = new int[postings];
+		int[] positionOffsets = new int[postings + 1];
+		Encoder encoder = new Encoder(postings * 2);
+
+		int w = 0;
+		int p = 0;
+		for (Map.Entry<String, PostingList> entry : index.entrySet()) {
+			PostingList list = entry.getValue();
+			offsets[w] = p;
+
+			// sort this word's postings by their new ids
+			long[] sorted = new long[list.size()];
+			for (int i = 0; i < sorted.length; i++) {
+				sorted[i] = ((long) ranks[list.id(i)] << 32) | i;
+			}
+			Arrays.sort(sorted);
+
+			for (long key : sorted) {
+				int i = (int) key;
+				ids[p] = (int) (key >>> 32);
+				frequencies[p] = list.frequency(i);
+				positionOffsets[p] = encoder.length;
+				encoder.write(list.positions(i));
+				p++;
+			}
+			w++;
+		}
+		offsets[w] = p;
+		positionOffsets[p] = encoder.length;
+
+		this.words = new TermDictionary(index.keySet());
+		this.offsets = IntBuffer.wrap(offsets);
+		this.ids = IntBuffer.wrap(ids);
+		this.frequencies = IntBuffer.wrap(frequencies);
+		this.positionOffsets = IntBuffer.wrap(positionOffsets);
+		this.positions = ByteBuffer.wrap(encoder.toByteArray());
+		this.counts = IntBuffer.wrap(sortedCounts);
+		this.prefixes = new PrefixTables(PrefixTables.DEFAULT_BUDGET);
+		this.bounds = null;
+		this.grams = null;
+	}
+
+	/**
+	 * Initializes a frozen index from data that has already been laid out, such as a mapped file.
+	 *
+	 * @param words           the word dictionary
+	 * @param offsets         where the postings of each word start
+	 * @param ids             the location id of every posting
+	 * @param frequencies     the frequency of every posting
+	 * @param positionOffsets where the positions of every posting start
+	 * @param positions       the encoded positions
+	 * @param locations       the sorted locations
+	 * @param counts          the word count of every location
+	 */
+	private FrozenIndex(TermDictionary words, IntBuffer offsets, IntBuffer ids, IntBuffer frequencies,
+			IntBuffer positionOffsets, ByteBuffer positions, String[] locations, IntBuffer counts) {
+		this.words = words;
+		this.offsets = offsets;
+		this.ids = ids;
+		this.frequencies = frequencies;
+		this.positionOffsets = positionOffsets;
+		this.positions = positions;
+		this.locations = locations;
+		this.counts = counts;
+		this.prefixes = new PrefixTables(PrefixTables.DEFAULT_BUDGET);
+		this.bounds = null;
+		this.grams = null;
+	}
+
+	/**
+	 * Merges frozen indexes into one. The words of every source are merged in order and the
+	 * postings of each word are combined without building any maps; positions are only decoded when
+	 * two sources have postings for the same word and location, and those are counted once.
+	 *
+	 * @param sources the indexes to merge
+	 * @return the merged index
+	 */
+	public static FrozenIndex merge(List<FrozenIndex> sources) {
+		int k = sources.size();
+
+		// the merged locations, and where the locations of each source ended up
+		TreeSet<String> names = new TreeSet<>();
+		int wordLimit = 0;
+		int postingLimit = 0;
+		for (FrozenIndex source : sources) {
+			names.addAll(Arrays.asList(source.locations));
+			wordLimit += source.words.size();
+			postingLimit += source.ids.capacity();
+		}
+		String[] locations = names.toArray(new String[0]);
+		int[][] remap = new int[k][];
+		for (int s = 0; s < k; s++) {
+			String[] theirs = sources.get(s).locations;
+			remap[s] = new int[theirs.length];
+			for (int id = 0; id < theirs.length; id++) {
+				remap[s][id] = Arrays.binarySearch(locations, theirs[id]);
+			}
+		}
+
+		ArrayList<String> words = new ArrayList<>();
+		int[] offsets = new int[wordLimit + 1];
+		int[] ids = new int[postingLimit];
+		int[] frequencies = new int[postingLimit];
+		int[] positionOffsets = new int[postingLimit + 1];
+		int[] counts = new int[locations.length];
+		Encoder encoder = new Encoder(postingLimit * 2);
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		Iterator<String>[] iterators = new Iterator[k];
+		String[] heads = new String[k];
+		int[] next = new int[k];
+		for (int s = 0; s < k; s++) {
+			iterators[s] = sources.get(s).words.iterator();
+			heads[s] = iterators[s].hasNext() ? iterators[s].next() : null;
+		}
+
+		int p = 0;
+		while (true) {
+			String word = null;
+			for (String head : heads) {
+				if (head != null && (word == null || head.compareTo(word) < 0)) {
+					word = head;
+				}
+			}
+			if (word == null) {
+				break;
+			}
+
+			// gather every posting of this word, keyed by its merged location id
+			int total = 0;
+			for (int s = 0; s < k; s++) {
+				if (word.equals(heads[s])) {
+					total += sources.get(s).end(next[s]) - sources.get(s).start(next[s]);
+				}
+			}
+			long[] keys = new long[total];
+			int[] owners = new int[total];
+			int[] postings = new int[total];
+			int count = 0;
+			for (int s = 0; s < k; s++) {
+				if (word.equals(heads[s])) {
+					FrozenIndex source = sources.get(s);
+					for (int q = source.start(next[s]); q < source.end(next[s]); q++) {
+						keys[count] = ((long) remap[s][source.ids.get(q)] << 32) | count;
+						owners[count] = s;
+						postings[count] = q;
+						count++;
+					}
+					next[s]++;
+					heads[s] = iterators[s].hasNext() ? iterators[s].next() : null;
+				}
+			}
+			Arrays.sort(keys);
+
+			offsets[words.size()] = p;
+			words.add(word);
+			for (int i = 0; i < total; i++) {
+				int id = (int) (keys[i] >>> 32);
+				int first = (int) keys[i];
+				FrozenIndex source = sources.get(owners[first]);
+				ids[p] = id;
+				positionOffsets[p] = encoder.length;
+
+				if (i + 1 < total && (int) (keys[i + 1] >>> 32) == id) {
+					// the same word and location in more than one source
+					PositionList merged = source.positions(postings[first]);
+					while (i + 1 < total && (int) (keys[i + 1] >>> 32) == id) {
+						int other = (int) keys[++i];
+						merged.addAll(sources.get(owners[other]).positions(postings[other]));
+					}
+					frequencies[p] = merged.size();
+					encoder.write(merged);
+				} else {
+					frequencies[p] = source.frequencies.get(postings[first]);
+					encoder.copy(source.positions, source.positionOffsets.get(postings[first]),
+							source.positionOffsets.get(postings[first] + 1));
+				}
+				counts[id] += frequencies[p];
+				p++;
+			}
+		}
+		offsets[words.size()] = p;
+		positionOffsets[p] = encoder.length;
+
+		return new FrozenIndex(new TermDictionary(words), IntBuffer.wrap(Arrays.copyOf(offsets, words.size() + 1)),
+				IntBuffer.wrap(Arrays.copyOf(ids, p)), IntBuffer.wrap(Arrays.copyOf(frequencies, p)),
+				IntBuffer.wrap(Arrays.copyOf(positionOffsets, p + 1)), ByteBuffer.wrap(encoder.toByteArray()), locations,
+				IntBuffer.wrap(counts));
+	}
+
+	/**
+	 * Number of words
+	 *
+	 * @return the number of words
+	 */
+	public int size() {
+		return words.size();
+	}
+
+	/**
+	 * Number of positions stored across every word and location
+	 *
+	 * @return total number of postings
+	 */
+	public long postings() {
+		long total = 0;
+		for (int id = 0; id < locations.length; id++) {
+			total += counts.get(id);
+		}
+		return total;
+	}
+
+	/**
+	 * Number of word and location pairs, which unlike {@link #postings()} takes constant time
+	 *
+	 * @return the number of entries in the posting lists
+	 */
+	int entries() {
+		return ids.capacity();
+	}
+
+	/**
+	 * Estimates the space used by the postings, which is off the heap if the index is mapped.
+	 *
+	 * @return the estimated number of bytes
+	 */
+	public long postingBytes() {
+		return 4L * (offsets.capacity() + ids.capacity() + frequencies.capacity() + positionOffsets.capacity())
+				+ positions.capacity();
+	}
+
+	/**
+	 * Estimates the space used by the word dictionary.
+	 *
+	 * @return the estimated number of bytes
+	 */
+	public long dictionaryBytes() {
+		return words.sizeInBytes();
+	}
+
+	/**
+	 * Average estimated number of bytes used to store one position
+	 *
+	 * @return bytes per posting, or 0 if the index is empty
+	 */
+	public double bytesPerPosting() {
+		long postings = postings();
+		return postings == 0 ? 0 : (double) postingBytes() / postings;
+	}
+
+	/**
+	 * Helper method to see if the index contains the word
+	 *
+	 * @param word the word passed
+	 * @return a boolean
+	 */
+	public boolean contains(String word) {
+		return words.find(word) >= 0;
+	}
+
+	/**
+	 * Helper method to see if the index contains the word given word and location
+	 *
+	 * @param word     the word passed
+	 * @param location the location passed
+	 * @return a boolean
+	 */
+	public boolean contains(String word, String location) {
+		return find(word, location) >= 0;
+	}
+
+	/**
+	 * Helper method to see if the index contains the word given word, location, and position
+	 *
+	 * @param word     the word passed
+	 * @param location the location passed
+	 * @param position the position passed
+	 * @return a boolean
+	 */
+	public boolean contains(String word, String location, int position) {
+		int posting = find(word, location);
+		if (posting < 0) {
+			return false;
+		}
+		Decoder decoder = new Decoder(posting);
+		while (decoder.hasNext()) {
+			int current = decoder.nextInt();
+			if (current >= position) {
+				return current == position;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Helper method to get unmodifiable words
+	 *
+	 * @return words as a Set, unmodifiable.
+	 */
+	public Set<String> getWords() {
+		return new AbstractSet<>() {
+
+			@Override
+			public Iterator<String> iterator() {
+				return words.iterator();
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof String && FrozenIndex.this.contains((String) o);
+			}
+
+			@Override
+			public int size() {
+				return words.size();
+			}
+		};
+	}
+
+	/**
+	 * Helper method to get locations given a word
+	 *
+	 * @param word the word passed
+	 * @return a Set of Strings
+	 */
+	public Set<String> getLocations(String word) {
+		int w = words.find(word);
+		if (w < 0) {
+			return Collections.emptySet();
+		}
+		TreeSet<String> found = new TreeSet<>();
+		for (int p = offsets.get(w); p < offsets.get(w + 1); p++) {
+			found.add(locations[ids.get(p)]);
+		}
+		return Collections.unmodifiableSet(found);
+	}
+
+	/**
+	 * Helper method to get the positions given a word and a location
+	 *
+	 * @param word     the word passed
+	 * @param location the location passed
+	 * @return a Set of Integers
+	 */
+	public Set<Integer> getPositions(String word, String location) {
+		int posting = find(word, location);
+		if (posting < 0) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(positions(posting));
+	}
+
+	/**
+	 * chooses the search based on the flag given
+	 *
+	 * @param queries      takes in the queries
+	 * @param hasExactFlag checks which flag to see if it is an exact search or partial search
+	 * @return returns a collection<QueryResult> based off the search
+	 */
+	public Collection<InvertedIndex.QueryResult> chooseSearch(Collection<String> queries, boolean hasExactFlag) {
+		if (hasExactFlag) {
+			return exactSearch(queries);
+		}
+		return partialSearch(queries);
+	}
+
+	/**
+	 * exact search for queries
+	 *
+	 * @param queries to search with
+	 * @return return search results in a collection
+	 */
+	public Collection<InvertedIndex.QueryResult> exactSearch(Collection<String> queries) {
+		return search(queries, true, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * partial search for queries
+	 *
+	 * @param queries to search with
+	 * @return return search results in a collection
+	 */
+	public Collection<InvertedIndex.QueryResult> partialSearch(Collection<String> queries) {
+		return search(queries, false, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Searches for queries and keeps only the best results. When the queries expand to only a few
+	 * words, locations that cannot make the results are skipped with {@link MaxScoreSearch}.
+	 *
+	 * @param queries to search with
+	 * @param exact   whether to do an exact search
+	 * @param k       the most results to return
+	 * @return the best {@code k} results, in the same order as {@link #chooseSearch(Collection, boolean)}
+	 *
+	 * @see InvertedIndex#search(Collection, boolean, int)
+	 */
+	public List<InvertedIndex.QueryResult> search(Collection<String> queries, boolean exact, int k) {
+		if (k > 0 && k < locations.length) {
+			int[] terms = terms(queries, exact, MaxScoreSearch.MAX_TERMS);
+			if (terms != null) {
+				return MaxScoreSearch.search(this, terms, k);
+			}
+		}
+
+		ScoreAccumulator accumulator = ScoreAccumulator.get(locations.length);
+		for (String query : queries) {
+			if (exact) {
+				int w = words.find(query);
+				if (w >= 0) {
+					searchHelper(accumulator, w);
+				}
+				continue;
+			}
+			int[] table = prefixes.lookup(query);
+			if (table != null) {
+				accumulator.addAll(table);
+				continue;
+			}
+			// every word starting with the query has an id in this range
+			int start = words.prefixStart(query);
+			int end = words.prefixEnd(query);
+			if (prefixes.wanted(query)) {
+				table = new int[locations.length];
+				for (int p = start(start); p < start(end); p++) {
+					table[ids.get(p)] += frequencies.get(p);
+				}
+				prefixes.offer(query, table, start(end) - start(start));
+				accumulator.addAll(table);
+				continue;
+			}
+			for (int w = start; w < end; w++) {
+				searchHelper(accumulator, w);
+			}
+		}
+		return accumulator.results(k, id -> locations[id], counts::get);
+	}
+
+	/**
+	 * Finds the words queries expand to, as long as there are only a few.
+	 *
+	 * @param queries the queries
+	 * @param exact   whether to do an exact search
+	 * @param limit   the most words to find
+	 * @return the indices of the words, repeated when two queries expand to the same word, or
+	 *         {@code null} if there are more than {@code limit}
+	 */
+	private int[] terms(Collection<String> queries, boolean exact, int limit) {
+		int[] terms = new int[limit];
+		int size = 0;
+		for (String query : queries) {
+			int start = exact ? words.find(query) : words.prefixStart(query);
+			int end = exact ? start + 1 : words.prefixEnd(query);
+			start = Math.max(start, 0);
+			if (end - start > limit - size) {
+				return null;
+			}
+			for (int w = start; w < end; w++) {
+				terms[size++] = w;
+			}
+		}
+		return Arrays.copyOf(terms, size);
+	}
+
+	/**
+	 * Changes how much memory may be spent on precomputed match counts for short prefixes.
+	 *
+	 * @param bytes the most bytes to spend
+	 */
+	public void setPrefixBudget(long bytes) {
+		prefixes.budget(bytes);
+	}
+
+	/**
+	 * Searches for queries like {@link #search(Collection, boolean, int)}, but splits the location ids
+	 * into ranges that are scored in parallel on the common {@link ForkJoinPool} when the words the
+	 * queries expand to have enough postings to be worth it. Postings are sorted by location id, so
+	 * each range only reads its own slice of every posting list, and no two ranges ever add to the same
+	 * match count.
+	 *
+	 * @param queries to search with
+	 * @param exact   whether to do an exact search
+	 * @param k       the most results to return
+	 * @return the best {@code k} results, in the same order as {@link #chooseSearch(Collection, boolean)}
+	 */
+	public List<InvertedIndex.QueryResult> parallelSearch(Collection<String> queries, boolean exact, int k) {
+		return parallelSearch(queries, exact, k, PARALLEL_POSTINGS);
+	}
+
+	/**
+	 * Searches for queries in parallel once they match enough postings.
+	 *
+	 * @param queries   to search with
+	 * @param exact     whether to do an exact search
+	 * @param k         the most results to return
+	 * @param threshold the fewest postings to search in parallel
+	 * @return the best {@code k} results, in the same order as {@link #chooseSearch(Collection, boolean)}
+	 */
+	List<InvertedIndex.QueryResult> parallelSearch(Collection<String> queries, boolean exact, int k, int threshold) {
+		// the word ids each query expands to, repeated when two queries expand to the same word
+		int[] expanded = new int[16];
+		int size = 0;
+		long postings = 0;
+		for (String query : queries) {
+			int start = exact ? words.find(query) : words.prefixStart(query);
+			int end = exact ? start + 1 : words.prefixEnd(query);
+			for (int w = Math.max(start, 0); w < end; w++) {
+				if (size == expanded.length) {
+					expanded = Arrays.copyOf(expanded, size * 2);
+				}
+				expanded[size++] = w;
+				postings += offsets.get(w + 1) - offsets.get(w);
+			}
+		}
+
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		if (postings < threshold || parallelism < 2 || locations.length < 2) {
+			return search(queries, exact, k);
+		}
+
+		int[] matches = new int[locations.length];
+		int grain = Math.max(1, locations.length / (parallelism * 4));
+		ForkJoinPool.commonPool().invoke(new ScoreTask(Arrays.copyOf(expanded, size), matches, 0, locations.length, grain));
+
+		ScoreAccumulator accumulator = ScoreAccumulator.get(locations.length);
+		for (int id = 0; id < matches.length; id++) {
+			if (matches[id] > 0) {
+				accumulator.add(id, matches[id]);
+			}
+		}
+		return accumulator.results(k, id -> locations[id], counts::get);
+	}
+
+	/**
+	 * Searches for the words that are within a few edits of each query.
+	 *
+	 * @param queries to search with
+	 * @return the sorted results
+	 *
+	 * @see InvertedIndex#fuzzySearch(Collection)
+	 */
+	public Collection<InvertedIndex.QueryResult> fuzzySearch(Collection<String> queries) {
+		TreeSet<String> found = new TreeSet<>();
+		for (String query : queries) {
+			found.addAll(fuzzyTerms(query, LevenshteinAutomaton.maxEdits(query), LevenshteinAutomaton.DEFAULT_LIMIT));
+		}
+		return exactSearch(found);
+	}
+
+	/**
+	 * Finds the words in the index within a number of edits of a word.
+	 *
+	 * @param word     the word
+	 * @param maxEdits the most insertions, deletions or substitutions
+	 * @param limit    the most words to return
+	 * @return the closest words first, and in order when they are equally close
+	 *
+	 * @see InvertedIndex#fuzzyTerms(String, int, int)
+	 */
+	public List<String> fuzzyTerms(String word, int maxEdits, int limit) {
+		return new LevenshteinAutomaton(word, maxEdits).match(this::ceiling, limit);
+	}
+
+	/**
+	 * Returns the first word in the index that is not less than a string.
+	 *
+	 * @param key the string
+	 * @return the word, or {@code null} if every word is less
+	 */
+	String ceiling(String key) {
+		int w = words.prefixStart(key);
+		return w < words.size() ? words.get(w) : null;
+	}
+
+	/**
+	 * Searches for the words matching wildcard patterns.
+	 *
+	 * @param patterns the patterns, where {@code *} matches any number of letters
+	 * @return the sorted results
+	 *
+	 * @see InvertedIndex#wildcardSearch(Collection)
+	 */
+	public Collection<InvertedIndex.QueryResult> wildcardSearch(Collection<String> patterns) {
+		TreeSet<String> found = new TreeSet<>();
+		for (String pattern : patterns) {
+			found.addAll(wildcardTerms(pattern));
+		}
+		return exactSearch(found);
+	}
+
+	/**
+	 * Finds the words in the index matching a wildcard pattern. The k-gram index is built the first
+	 * time it is needed, so indexes that are never searched this way do not pay for it.
+	 *
+	 * @param pattern the pattern, where {@code *} matches any number of letters
+	 * @return the matching words, in order
+	 *
+	 * @see InvertedIndex#wildcardTerms(String)
+	 */
+	public List<String> wildcardTerms(String pattern) {
+		KGramIndex known = grams;
+		if (known == null) {
+			synchronized (this) {
+				known = grams;
+				if (known == null) {
+					known = new KGramIndex(words);
+					grams = known;
+				}
+			}
+		}
+		// the dictionary is sorted, so words come back in order
+		return known.match(pattern);
+	}
+
+	/**
+	 * Finds the locations where the words of a phrase appear one right after another. Locations that
+	 * do not have every word are ruled out by their ids before any positions are decoded.
+	 *
+	 * @param phrase the stemmed words of the phrase, in order
+	 * @return the sorted results, where the match count is the number of times the phrase appears
+	 *
+	 * @see InvertedIndex#phraseSearch(List)
+	 */
+	public Collection<InvertedIndex.QueryResult> phraseSearch(List<String> phrase) {
+		int[] w = new int[phrase.size()];
+		int rarest = 0;
+		for (int i = 0; i < w.length; i++) {
+			w[i] = words.find(phrase.get(i));
+			if (w[i] < 0) {
+				return new ArrayList<>();
+			}
+			if (end(w[i]) - start(w[i]) < end(w[rarest]) - start(w[rarest])) {
+				rarest = i;
+			}
+		}
+		if (w.length == 0) {
+			return new ArrayList<>();
+		}
+
+		// the ids of each word are sorted, so every search can start where the last one ended
+		int[] low = new int[w.length];
+		for (int i = 0; i < w.length; i++) {
+			low[i] = start(w[i]);
+		}
+
+		ScoreAccumulator accumulator = ScoreAccumulator.get(locations.length);
+		int[] postings = new int[w.length];
+		int[][] positions = new int[w.length][];
+		candidates: for (int p = start(w[rarest]); p < end(w[rarest]); p++) {
+			int id = ids.get(p);
+			for (int i = 0; i < w.length; i++) {
+				low[i] = seek(low[i], end(w[i]), id);
+				if (low[i] == end(w[i]) || ids.get(low[i]) != id) {
+					continue candidates;
+				}
+				postings[i] = low[i];
+			}
+			for (int i = 0; i < w.length; i++) {
+				positions[i] = positionArray(postings[i]);
+			}
+			int found = InvertedIndex.phraseMatches(positions);
+			if (found > 0) {
+				accumulator.add(id, found);
+			}
+		}
+		return accumulator.results(Integer.MAX_VALUE, id -> locations[id], counts::get);
+	}
+
+	/**
+	 * Finds the locations that match a Boolean query.
+	 *
+	 * @param query the query
+	 * @param exact whether words must match exactly or may match as a prefix
+	 * @return the sorted results
+	 *
+	 * @see InvertedIndex#booleanSearch(BooleanQuery, boolean)
+	 */
+	public Collection<InvertedIndex.QueryResult> booleanSearch(BooleanQuery query, boolean exact) {
+		return query.search(new BooleanQuery.Source() {
+
+			@Override
+			public BooleanQuery.Postings word(String word) {
+				int w = words.find(word);
+				return w < 0 ? null : new Postings(w);
+			}
+
+			@Override
+			public List<BooleanQuery.Postings> prefix(String prefix) {
+				ArrayList<BooleanQuery.Postings> found = new ArrayList<>();
+				int end = words.prefixEnd(prefix);
+				for (int w = words.prefixStart(prefix); w < end; w++) {
+					found.add(new Postings(w));
+				}
+				return found;
+			}
+
+			@Override
+			public int locations() {
+				return locations.length;
+			}
+		}, exact, id -> locations[id], counts::get);
+	}
+
+	/**
+	 * Finds the first posting in a range whose location id is not less than an id.
+	 *
+	 * @param from the first posting to look at
+	 * @param to   one past the last posting to look at
+	 * @param id   the location id
+	 * @return the posting, or {@code to} if every id in the range is smaller
+	 */
+	private int seek(int from, int to, int id) {
+		int low = from;
+		int high = to;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (ids.get(mid) < id) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Decodes the positions of a posting into a new sorted array.
+	 *
+	 * @param p the index of the posting
+	 * @return the positions
+	 */
+	private int[] positionArray(int p) {
+		int[] positions = new int[frequencies.get(p)];
+		Decoder decoder = new Decoder(p);
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = decoder.nextInt();
+		}
+		return positions;
+	}
+
+	/**
+	 * Adds the postings of one word to the results.
+	 *
+	 * @param accumulator the match counts so far
+	 * @param w           the index of the word
+	 */
+	private void searchHelper(ScoreAccumulator accumulator, int w) {
+		int end = offsets.get(w + 1);
+		for (int p = offsets.get(w); p < end; p++) {
+			accumulator.add(ids.get(p), frequencies.get(p));
+		}
+	}
+
+	/**
+	 * writes the inverted index back to the given path in pretty Json format
+	 *
+	 * @param path writes back to path
+	 * @throws IOException throws IO Exception
+	 */
+	public void toJson(Path path) throws IOException {
+		SimpleJsonWriter.asDoubleNestedObject(new LocationView(), path);
+	}
+
+	/**
+	 * writes the count back to the given path in pretty json format
+	 *
+	 * @param path path
+	 * @throws IOException throws IOException
+	 */
+	public void countToJson(Path path) throws IOException {
+		LinkedHashMap<String, Integer> sorted = new LinkedHashMap<>();
+		for (int id = 0; id < locations.length; id++) {
+			if (counts.get(id) > 0) {
+				sorted.put(locations[id], counts.get(id));
+			}
+		}
+		SimpleJsonWriter.asObject(sorted, path);
+	}
+
+	@Override
+	public String toString() {
+		return new LocationView().toString();
+	}
+
+	/**
+	 * Writes the index to a file that {@link #map(Path)} can read. The file is written next to the
+	 * target first and then moved into place, so a file that is currently mapped is never changed, and
+	 * it is deleted again if the write fails.
+	 *
+	 * The file starts with {@link #MAGIC}, {@link #VERSION} and six integers (word, posting, location
+	 * and block counts, then the dictionary and position lengths in bytes), followed by the word
+	 * offsets, location ids, frequencies, position offsets, location counts and block offsets as
+	 * integers, then the dictionary and position bytes, then the locations as length-prefixed UTF-8.
+	 * The last eight bytes are a CRC32 of everything before them.
+	 *
+	 * @param path the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(Path path) throws IOException {
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		ByteBuffer dictionary = words.data();
+		IntBuffer blocks = words.blocks();
+
+		try {
+			CRC32 checksum = new CRC32();
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new CheckedOutputStream(Files.newOutputStream(temp), checksum)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(words.size());
+				out.writeInt(ids.capacity());
+				out.writeInt(locations.length);
+				out.writeInt(blocks.capacity());
+				out.writeInt(dictionary.capacity());
+				out.writeInt(positions.capacity());
+
+				writeInts(out, offsets);
+				writeInts(out, ids);
+				writeInts(out, frequencies);
+				writeInts(out, positionOffsets);
+				writeInts(out, counts);
+				writeInts(out, blocks);
+				writeBytes(out, dictionary);
+				writeBytes(out, positions);
+
+				for (String location : locations) {
+					byte[] bytes = location.getBytes(StandardCharsets.UTF_8);
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+
+				// the checksum only covers bytes that have reached it, so flush before reading it
+				out.flush();
+				out.writeLong(checksum.getValue());
+			}
+
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | RuntimeException e) {
+			// do not leave a half written file behind
+			try {
+				Files.deleteIfExists(temp);
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Maps a file written by {@link #write(Path)}. Every section is mapped on its own, so the file
+	 * may be larger than 2GB as long as each section is not. The whole file is read once to check
+	 * its checksum before it is used.
+	 *
+	 * @param path the file to map
+	 * @return the mapped index
+	 * @throws IOException if the file cannot be read, or is not a valid index file of this version
+	 */
+	public static FrozenIndex map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_BYTES + 8) {
+				throw new IOException("Not an index file: " + path);
+			}
+			IntBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).asIntBuffer();
+			if (header.get(0) != MAGIC) {
+				throw new IOException("Not an index file: " + path);
+			}
+			if (header.get(1) != VERSION) {
+				throw new IOException("Unsupported index file version " + header.get(1) + ": " + path);
+			}
+			verify(channel, size - 8, path);
+
+			int wordCount = header.get(2);
+			int postingCount = header.get(3);
+			int locationCount = header.get(4);
+			int blockCount = header.get(5);
+			int dictionaryLength = header.get(6);
+			int positionsLength = header.get(7);
+
+			long offset = HEADER_BYTES;
+			IntBuffer offsets = mapInts(channel, offset, wordCount + 1);
+			offset += 4L * (wordCount + 1);
+			IntBuffer ids = mapInts(channel, offset, postingCount);
+			offset += 4L * postingCount;
+			IntBuffer frequencies = mapInts(channel, offset, postingCount);
+			offset += 4L * postingCount;
+			IntBuffer positionOffsets = mapInts(channel, offset, postingCount + 1);
+			offset += 4L * (postingCount + 1);
+			IntBuffer counts = mapInts(channel, offset, locationCount);
+			offset += 4L * locationCount;
+			IntBuffer blocks = mapInts(channel, offset, blockCount);
+			offset += 4L * blockCount;
+			ByteBuffer dictionary = channel.map(FileChannel.MapMode.READ_ONLY, offset, dictionaryLength);
+			offset += dictionaryLength;
+			ByteBuffer positions = channel.map(FileChannel.MapMode.READ_ONLY, offset, positionsLength);
+			offset += positionsLength;
+
+			// the locations are needed for every result, so they are kept on the heap
+			ByteBuffer names = channel.map(FileChannel.MapMode.READ_ONLY, offset, size - 8 - offset);
+			String[] locations = new String[locationCount];
+			for (int i = 0; i < locationCount; i++) {
+				byte[] bytes = new byte[names.getInt()];
+				names.get(bytes);
+				locations[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			return new FrozenIndex(new TermDictionary(dictionary, blocks, wordCount), offsets, ids, frequencies,
+					positionOffsets, positions, locations, counts);
+		}
+	}
+
+	/**
+	 * Checks the CRC32 stored at the end of an index file.
+	 *
+	 * @param channel the file
+	 * @param length  the number of bytes covered by the checksum
+	 * @param path    the file, for error messages
+	 * @throws IOException if the file cannot be read or the checksum does not match
+	 */
+	private static void verify(FileChannel channel, long length, Path path) throws IOException {
+		CRC32 checksum = new CRC32();
+		for (long offset = 0; offset < length; offset += Integer.MAX_VALUE) {
+			long chunk = Math.min(Integer.MAX_VALUE, length - offset);
+			checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, chunk));
+		}
+		long expected = channel.map(FileChannel.MapMode.READ_ONLY, length, 8).getLong();
+		if (checksum.getValue() != expected) {
+			throw new IOException("Index file is corrupt: " + path);
+		}
+	}
+
+	/**
+	 * Maps a section of integers from a file.
+	 *
+	 * @param channel the file
+	 * @param offset  where the section starts
+	 * @param count   the number of integers
+	 * @return the mapped integers
+	 * @throws IOException if the file cannot be mapped
+	 */
+	private static IntBuffer mapInts(FileChannel channel, long offset, int count) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, 4L * count).asIntBuffer();
+	}
+
+	/**
+	 * Writes every integer in a buffer.
+	 *
+	 * @param out    the stream to write to
+	 * @param buffer the integers to write
+	 * @throws IOException if the stream cannot be written
+	 */
+	private static void writeInts(DataOutputStream out, IntBuffer buffer) throws IOException {
+		for (int i = 0; i < buffer.capacity(); i++) {
+			out.writeInt(buffer.get(i));
+		}
+	}
+
+	/**
+	 * Writes every byte in a buffer.
+	 *
+	 * @param out    the stream to write to
+	 * @param buffer the bytes to write
+	 * @throws IOException if the stream cannot be written
+	 */
+	private static void writeBytes(DataOutputStream out, ByteBuffer buffer) throws IOException {
+		byte[] chunk = new byte[8192];
+		ByteBuffer source = buffer.duplicate();
+		source.clear();
+		while (source.hasRemaining()) {
+			int length = Math.min(chunk.length, source.remaining());
+			source.get(chunk, 0, length);
+			out.write(chunk, 0, length);
+		}
+	}
+
+	/**
+	 * Returns the word dictionary, for walking the frozen data directly. The id of each word is the
+	 * index to pass to {@link #start(int)} and {@link #end(int)}.
+	 *
+	 * @return the word dictionary
+	 */
+	TermDictionary words() {
+		return words;
+	}
+
+	/**
+	 * Returns where the postings of a word start.
+	 *
+	 * @param w the index of the word
+	 * @return the index of its first posting
+	 */
+	int start(int w) {
+		return offsets.get(w);
+	}
+
+	/**
+	 * Returns where the postings of a word end.
+	 *
+	 * @param w the index of the word
+	 * @return one past the index of its last posting
+	 */
+	int end(int w) {
+		return offsets.get(w + 1);
+	}
+
+	/**
+	 * Returns the location id of a posting.
+	 *
+	 * @param p the index of the posting
+	 * @return the location id
+	 */
+	int id(int p) {
+		return ids.get(p);
+	}
+
+	/**
+	 * Returns the number of positions of a posting.
+	 *
+	 * @param p the index of the posting
+	 * @return the frequency
+	 */
+	int frequency(int p) {
+		return frequencies.get(p);
+	}
+
+	/**
+	 * Returns an upper bound on the score a word alone can give any location, which is its highest
+	 * frequency over word count. Bounds are worked out the first time they are needed and kept.
+	 *
+	 * @param w the index of the word
+	 * @return the bound, rounded up
+	 */
+	double maxScore(int w) {
+		int[] known = bounds;
+		if (known == null) {
+			// a race only means two threads work out the same bounds
+			known = new int[words.size()];
+			bounds = known;
+		}
+		if (known[w] == 0) {
+			double max = 0;
+			for (int p = start(w); p < end(w); p++) {
+				max = Math.max(max, (double) frequencies.get(p) / counts.get(ids.get(p)));
+			}
+			// kept as the bits of a float, which are written at once, rounded up so it stays a bound
+			known[w] = Float.floatToIntBits(Math.nextUp((float) max));
+		}
+		return Float.intBitsToFloat(known[w]);
+	}
+
+	/**
+	 * Number of locations
+	 *
+	 * @return the number of locations
+	 */
+	int locationCount() {
+		return locations.length;
+	}
+
+	/**
+	 * Returns a location by its id.
+	 *
+	 * @param id the location id
+	 * @return the location
+	 */
+	String location(int id) {
+		return locations[id];
+	}
+
+	/**
+	 * Returns the word count of a location.
+	 *
+	 * @param id the location id
+	 * @return the word count
+	 */
+	int count(int id) {
+		return counts.get(id);
+	}
+
+	/**
+	 * Returns the word count of a location.
+	 *
+	 * @param location the location
+	 * @return the word count, or 0 if the location is not in the index
+	 */
+	int count(String location) {
+		int id = Arrays.binarySearch(locations, location);
+		return id < 0 ? 0 : counts.get(id);
+	}
+
+	/**
+	 * Decodes the positions of a posting into a new list.
+	 *
+	 * @param p the index of the posting
+	 * @return the positions
+	 */
+	PositionList positions(int p) {
+		PositionList list = new PositionList();
+		Decoder decoder = new Decoder(p);
+		while (decoder.hasNext()) {
+			list.add(decoder.nextInt());
+		}
+		return list;
+	}
+
+	/**
+	 * Finds the posting for a word and location.
+	 *
+	 * @param word     the word
+	 * @param location the location
+	 * @return the index of the posting, or -1 if there is none
+	 */
+	private int find(String word, String location) {
+		int w = words.find(word);
+		int id = Arrays.binarySearch(locations, location);
+		if (w < 0 || id < 0) {
+			return -1;
+		}
+		int low = offsets.get(w);
+		int high = offsets.get(w + 1) - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int current = ids.get(mid);
+			if (current < id) {
+				low = mid + 1;
+			} else if (current > id) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Read-only view of the index keyed by location strings, in the shape the JSON writer expects.
+	 */
+	private class LocationView extends AbstractMap<String, Map<String, PositionList>> {
+
+		@Override
+		public Set<Map.Entry<String, Map<String, PositionList>>> entrySet() {
+			return new AbstractSet<>() {
+
+				@Override
+				public Iterator<Map.Entry<String, Map<String, PositionList>>> iterator() {
+					Iterator<String> iterator = words.iterator();
+					return new Iterator<>() {
+
+						/** The id of the next word. */
+						private int w = 0;
+
+						@Override
+						public boolean hasNext() {
+							return iterator.hasNext();
+						}
+
+						@Override
+						public Map.Entry<String, Map<String, PositionList>> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							LinkedHashMap<String, PositionList> byLocation = new LinkedHashMap<>();
+							for (int p = offsets.get(w); p < offsets.get(w + 1); p++) {
+								byLocation.put(locations[ids.get(p)], positions(p));
+							}
+							w++;
+							return new AbstractMap.SimpleImmutableEntry<>(iterator.next(), byLocation);
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return words.size();
+				}
+			};
+		}
+
+	}
+
+	/**
+	 * Appends positions to a growing byte array in the same encoding {@link PositionList} uses.
+	 */
+	private static class Encoder {
+
+		/** The encoded bytes. */
+		private byte[] bytes;
+
+		/** The number of bytes in use. */
+		private int length;
+
+		/**
+		 * Initializes an encoder.
+		 *
+		 * @param capacity the initial capacity
+		 */
+		public Encoder(int capacity) {
+			this.bytes = new byte[Math.max(16, capacity)];
+			this.length = 0;
+		}
+
+		/**
+		 * Appends a list of positions as deltas.
+		 *
+		 * @param list the positions to append
+		 */
+		public void write(PositionList list) {
+			int previous = 0;
+			boolean first = true;
+			for (int position : list.toIntArray()) {
+				writeInt(first ? position : position - previous);
+				previous = position;
+				first = false;
+			}
+		}
+
+		/**
+		 * Appends positions that are already encoded.
+		 *
+		 * @param source the encoded positions
+		 * @param from   the offset of the first byte to copy
+		 * @param to     the offset just past the last byte to copy
+		 */
+		public void copy(ByteBuffer source, int from, int to) {
+			if (length + to - from > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(length + to - from, bytes.length * 2));
+			}
+			source.get(from, bytes, length, to - from);
+			length += to - from;
+		}
+
+		/**
+		 * Appends a variable-byte integer.
+		 *
+		 * @param value the value to append, treated as unsigned
+		 */
+		private void writeInt(int value) {
+			if (length + 5 > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(length + 5, bytes.length * 2));
+			}
+			while ((value & ~0x7F) != 0) {
+				bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			bytes[length++] = (byte) value;
+		}
+
+		/**
+		 * Returns the encoded bytes, trimmed to size.
+		 *
+		 * @return the encoded bytes
+		 */
+		public byte[] toByteArray() {
+			return Arrays.copyOf(bytes, length);
+		}
+
+	}
+
+	/**
+	 * The postings of one word, read straight from the buffers.
+	 */
+	private class Postings implements BooleanQuery.Postings {
+
+		/** The index of the first posting. */
+		private final int start;
+
+		/** The number of postings. */
+		private final int size;
+
+		/**
+		 * Initializes the postings of a word.
+		 *
+		 * @param w the index of the word
+		 */
+		public Postings(int w) {
+			this.start = start(w);
+			this.size = end(w) - start;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int id(int i) {
+			return ids.get(start + i);
+		}
+
+		@Override
+		public int frequency(int i) {
+			return frequencies.get(start + i);
+		}
+
+	}
+
+	/**
+	 * Adds up the matches of a range of location ids, splitting the range in half until it is small
+	 * enough to score directly.
+	 */
+	private class ScoreTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The indices of the words to score. */
+		private final int[] expanded;
+
+		/** The match count of every location id, shared by every task of the search. */
+		private final int[] matches;
+
+		/** The first location id of the range. */
+		private final int low;
+
+		/** One past the last location id of the range. */
+		private final int high;
+
+		/** The largest range to score without splitting. */
+		private final int grain;
+
+		/**
+		 * Initializes a task.
+		 *
+		 * @param expanded the indices of the words to score
+		 * @param matches  the match count of every location id
+		 * @param low      the first location id of the range
+		 * @param high     one past the last location id of the range
+		 * @param grain    the largest range to score without splitting
+		 */
+		public ScoreTask(int[] expanded, int[] matches, int low, int high, int grain) {
+			this.expanded = expanded;
+			this.matches = matches;
+			this.low = low;
+			this.high = high;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (high - low > grain) {
+				int mid = (low + high) >>> 1;
+				invokeAll(new ScoreTask(expanded, matches, low, mid, grain),
+						new ScoreTask(expanded, matches, mid, high, grain));
+				return;
+			}
+			for (int w : expanded) {
+				int end = seek(start(w), end(w), high);
+				for (int p = seek(start(w), end, low); p < end; p++) {
+					matches[ids.get(p)] += frequencies.get(p);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Walks the encoded positions of one posting in order.
+	 */
+	private class Decoder {
+
+		/** The offset of the next byte to read. */
+		private int offset;
+
+		/** The offset just past the last byte of this posting. */
+		private final int end;
+
+		/** The last position returned. */
+		private int current;
+
+		/** Whether a position has been returned yet. */
+		private boolean started;
+
+		/**
+		 * Initializes a decoder for a posting.
+		 *
+		 * @param p the index of the posting
+		 */
+		public Decoder(int p) {
+			this.offset = positionOffsets.get(p);
+			this.end = positionOffsets.get(p + 1);
+			this.current = 0;
+			this.started = false;
+		}
+
+		/**
+		 * Whether there are more positions.
+		 *
+		 * @return {@code true} if there are more positions
+		 */
+		public boolean hasNext() {
+			return offset < end;
+		}
+
+		/**
+		 * Returns the next position.
+		 *
+		 * @return the next position
+		 */
+		public int nextInt() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = positions.get(offset++);
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+
+			current = started ? current + value : value;
+			started = true;
+			return current;
+		}
+
+	}
+
+}
@@ -1,13 +1,21 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.text.DecimalFormat;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Data Structure that stores a word where it was found and the positions within the location
@@ -20,22 +28,75 @@ public class InvertedIndex {
 
 	/**
 	 * Stores a word, the locations that word was found, and the positions within that location the word
-	 * was found.
+	 * was found. Locations are stored by their id in {@link #locations} and the positions are kept
+	 * compressed in a {@link PositionList}.
 	 *
 	 */
-	private final TreeMap<String, TreeMap<String, TreeSet<Integer>>> index;
+	private final TreeMap<String, PostingList> index;
 
 	/**
-	 * countsIndex Stores the word count for each location in our index
+	 * Assigns an id to every location added to the index
 	 */
-	private final TreeMap<String, Integer> countsIndex;
+	private LocationDictionary locations;
+
+	/**
+	 * countsIndex Stores the word count for each location in our index, indexed by location id
+	 */
+	private int[] countsIndex;
+
+	/**
+	 * The location passed to the last call of {@link #add(String, String, Integer)} and its id, so
+	 * adding a whole file does not look the location up once per word.
+	 */
+	private String lastLocation;
+
+	/** The id of {@link #lastLocation}. */
+	private int lastId;
+
+	/**
+	 * The frozen copy reads are served from after {@link #freeze()}, or {@code null} if the index is
+	 * stored in the maps above
+	 */
+	private volatile FrozenIndex frozen;
+
+	/** Goes up by one after every write, so cached search results can tell they are out of date. */
+	private final AtomicLong generation;
+
+	/**
+	 * The merged match counts of the short prefixes searched the most, kept up to date as words are
+	 * added
+	 */
+	private final PrefixTables prefixes;
+
+	/**
+	 * Finds the words matching a wildcard pattern, or {@code null} until the first wildcard search, and
+	 * kept up to date as words are added after that
+	 */
+	private volatile KGramIndex grams;
 
 	/**
 	 * initializes Inverted index
 	 */
 	public InvertedIndex() {
-		this.index = new TreeMap<String, TreeMap<String, TreeSet<Integer>>>();
-		this.countsIndex = new TreeMap<String, Integer>();
+		this.index = new TreeMap<String, PostingList>();
+		this.locations = new LocationDictionary();
+		this.countsIndex = new int[16];
+		this.lastLocation = null;
+		this.lastId = -1;
+		this.frozen = null;
+		this.generation = new AtomicLong();
+		this.prefixes = new PrefixTables(PrefixTables.DEFAULT_BUDGET);
+		this.grams = null;
+	}
+
+	/**
+	 * Initializes an index whose reads are served from a frozen index until the first write.
+	 *
+	 * @param frozen the frozen index
+	 */
+	InvertedIndex(FrozenIndex frozen) {
+		this();
+		this.frozen = frozen;
 	}
 
 	/**
@@ -47,11 +108,37 @@ public class InvertedIndex {
 	 * @param wordOccurrence adding the word occurrence (meaning what line the word occurred on
 	 */
 	public void add(String word, String file, Integer wordOccurrence) {
-		index.putIfAbsent(word, new TreeMap<String, TreeSet<Integer>>());
-		index.get(word).putIfAbsent(file, new TreeSet<Integer>());
-		if (index.get(word).get(file).add(wordOccurrence)) {
-			countsIndex.put(file, countsIndex.getOrDefault(file, 0) + 1);
+		thaw();
+		int id = locationId(file);
+		PostingList postings = postingList(word);
+		if (postings.getOrCreate(id).add(wordOccurrence.intValue())) {
+			countsIndex[id]++;
+			prefixes.add(word, id, 1);
 		}
+		changed();
+	}
+
+	/**
+	 * Adds every word of a location at consecutive positions, as if {@link #add(String, String, Integer)}
+	 * had been called for each word in order.
+	 *
+	 * @param words    the words, in the order they were found
+	 * @param location the location the words were found in
+	 * @param start    the position of the first word
+	 */
+	public void addAll(List<String> words, String location, int start) {
+		thaw();
+		int id = locationId(location);
+		int position = start;
+		for (String word : words) {
+			PostingList postings = postingList(word);
+			if (postings.getOrCreate(id).add(position)) {
+				countsIndex[id]++;
+				prefixes.add(word, id, 1);
+			}
+			position++;
+		}
+		changed();
 	}
 
 	/**
@@ -60,27 +147,314 @@ public class InvertedIndex {
 	 * @param other Inverted Index
 	 */
 	public void addAll(InvertedIndex other) {
+		thaw();
+		FrozenIndex theirFrozen = other.frozen;
+		if (theirFrozen == null && other instanceof ThreadSafeInvertedIndex) {
+			// its maps are behind a lock, or empty if it keeps its data in shards or segments
+			theirFrozen = other.snapshot();
+		}
+		if (theirFrozen != null) {
+			copy(theirFrozen);
+			changed();
+			return;
+		}
+
+		// translate the other index's location ids into ours
+		int[] ids = new int[other.locations.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = locationId(other.locations.get(i));
+		}
+
 		// merge index
-		for (String word : other.index.keySet()) {
-			if (this.index.containsKey(word)) {
-				for (String file : other.index.get(word).keySet()) {
-					if (this.index.get(word).containsKey(file)) {
-						this.index.get(word).get(file).addAll(other.index.get(word).get(file));
-					} else {
-						this.index.get(word).put(file, other.index.get(word).get(file));
-					}
+		for (Map.Entry<String, PostingList> entry : other.index.entrySet()) {
+			PostingList theirs = entry.getValue();
+			PostingList ours = postingList(entry.getKey());
+			for (int i = 0; i < theirs.size(); i++) {
+				int id = ids[theirs.id(i)];
+				PositionList positions = ours.get(id);
+				int added = theirs.frequency(i);
+				if (positions == null) {
+					ours.put(id, theirs.positions(i));
+				} else {
+					// positions already present are not counted twice
+					added = positions.addAll(theirs.positions(i));
+					countsIndex[id] -= theirs.frequency(i) - added;
 				}
-			} else {
-				this.index.put(word, other.index.get(word));
+				prefixes.add(entry.getKey(), id, added);
 			}
 		}
+
 		// merge countsIndex
-		for (String location : other.countsIndex.keySet()) {
-			int count = other.countsIndex.get(location) + this.countsIndex.getOrDefault(location, 0);
-			this.countsIndex.put(location, count);
+		for (int i = 0; i < ids.length; i++) {
+			countsIndex[ids[i]] += other.countsIndex[i];
+		}
+		changed();
+	}
+
+	/**
+	 * Returns the postings of a word, adding the word if it is new.
+	 *
+	 * @param word the word
+	 * @return the postings of the word
+	 */
+	private PostingList postingList(String word) {
+		PostingList postings = index.get(word);
+		if (postings == null) {
+			postings = new PostingList();
+			index.put(word, postings);
+			KGramIndex known = grams;
+			if (known != null) {
+				known.add(word);
+			}
+		}
+		return postings;
+	}
+
+	/**
+	 * Returns the id of a location, assigning one and making room for its word count if needed.
+	 *
+	 * @param location the location to look up
+	 * @return the id of the location
+	 */
+	private int locationId(String location) {
+		if (location != lastLocation) {
+			lastId = locations.add(location);
+			lastLocation = location;
+			if (lastId >= countsIndex.length) {
+				countsIndex = Arrays.copyOf(countsIndex, Math.max(lastId + 1, countsIndex.length * 2));
+			}
+		}
+		return lastId;
+	}
+
+	/**
+	 * Compacts the index into a {@link FrozenIndex} that all reads are served from until the next
+	 * write. Call this once no further writes are expected; a later write copies the frozen data back
+	 * into the maps first.
+	 *
+	 * @return the frozen copy of the index
+	 */
+	public FrozenIndex freeze() {
+		return compact();
+	}
+
+	/**
+	 * Moves the data from the maps into a {@link FrozenIndex} if that has not happened yet. Kept apart
+	 * from {@link #freeze()} so other methods can freeze without going through an override that
+	 * takes a lock.
+	 *
+	 * @return the frozen copy of the index
+	 */
+	private FrozenIndex compact() {
+		if (frozen == null) {
+			frozen = budgeted(new FrozenIndex(index, locations, countsIndex));
+			prefixes.clear();
+			grams = null;
+			index.clear();
+			locations = new LocationDictionary();
+			countsIndex = new int[16];
+			lastLocation = null;
+			lastId = -1;
+		}
+		return frozen;
+	}
+
+	/**
+	 * Compacts the index like {@link #freeze()}, writes it to a file and then serves reads from the
+	 * mapped file, so the dictionary and postings no longer take up heap space.
+	 *
+	 * @param path the file to write and map
+	 * @return the mapped copy of the index
+	 * @throws IOException if the file cannot be written or mapped
+	 */
+	public FrozenIndex freeze(Path path) throws IOException {
+		compact().write(path);
+		frozen = budgeted(FrozenIndex.map(path));
+		return frozen;
+	}
+
+	/**
+	 * Makes the writes so far cheap to read once a batch of writes is done. A plain index simply
+	 * freezes itself; indexes that expect more writes may do something lighter.
+	 */
+	public void flush() {
+		freeze();
+	}
+
+	/**
+	 * Returns a frozen copy of the current contents without freezing the index itself. Indexes that
+	 * keep their data somewhere other than these maps override this, so other indexes can read them.
+	 *
+	 * @return the frozen copy
+	 */
+	FrozenIndex snapshot() {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot;
+		}
+		return new FrozenIndex(index, locations, countsIndex);
+	}
+
+	/**
+	 * Returns the word count of a location.
+	 *
+	 * @param location the location
+	 * @return the word count, or 0 if the location is not in the index
+	 */
+	int count(String location) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.count(location);
+		}
+		int id = locations.find(location);
+		return id < 0 ? 0 : countsIndex[id];
+	}
+
+	/**
+	 * Replaces the contents of the index with an index file written by {@link FrozenIndex#write(Path)}.
+	 * The file is mapped rather than read into the heap, and later writes add to the loaded data.
+	 *
+	 * @param path the index file to load
+	 * @throws IOException if the file cannot be read or is not a valid index file
+	 */
+	public void load(Path path) throws IOException {
+		FrozenIndex loaded = budgeted(FrozenIndex.map(path));
+		prefixes.clear();
+		grams = null;
+		index.clear();
+		locations = new LocationDictionary();
+		countsIndex = new int[16];
+		lastLocation = null;
+		lastId = -1;
+		frozen = loaded;
+		changed();
+	}
+
+	/**
+	 * Returns the generation of the index, which goes up by one every time the index is written to.
+	 * Search results found at one generation are still correct as long as the generation has not
+	 * changed.
+	 *
+	 * @return the generation
+	 */
+	public long generation() {
+		return generation.get();
+	}
 
+	/**
+	 * Moves to the next generation. Writers call this after their changes are visible to readers, so a
+	 * search that started before the change is never stamped with the new generation.
+	 */
+	protected void changed() {
+		generation.incrementAndGet();
+	}
+
+	/**
+	 * Returns the frozen copy of the index.
+	 *
+	 * @return the frozen copy, or {@code null} if the index is not frozen
+	 */
+	protected FrozenIndex frozen() {
+		return frozen;
+	}
+
+	/**
+	 * Changes how much memory may be spent on precomputed match counts for short prefixes, both for
+	 * the maps and for the frozen copy reads are served from.
+	 *
+	 * @param bytes the most bytes to spend
+	 */
+	public void setPrefixBudget(long bytes) {
+		prefixes.budget(bytes);
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			snapshot.setPrefixBudget(bytes);
 		}
+	}
 
+	/**
+	 * Returns how much memory may be spent on precomputed match counts for short prefixes.
+	 *
+	 * @return the most bytes to spend
+	 */
+	long prefixBudget() {
+		return prefixes.budget();
+	}
+
+	/**
+	 * Gives a frozen index the same prefix budget as this index.
+	 *
+	 * @param snapshot the frozen index reads will be served from
+	 * @return the same frozen index
+	 */
+	private FrozenIndex budgeted(FrozenIndex snapshot) {
+		snapshot.setPrefixBudget(prefixes.budget());
+		return snapshot;
+	}
+
+	/**
+	 * Copies the frozen data back into the maps so the index can be written to again.
+	 */
+	private void thaw() {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			frozen = null;
+			copy(snapshot);
+		}
+	}
+
+	/**
+	 * Merges a frozen index into this index. If this index is empty or frozen, the two are merged
+	 * with {@link FrozenIndex#merge(List)} in time linear in their size and this index stays frozen;
+	 * otherwise the frozen data is copied into the maps.
+	 *
+	 * @param other the frozen index to merge
+	 */
+	public void addAll(FrozenIndex other) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			frozen = budgeted(FrozenIndex.merge(List.of(snapshot, other)));
+		} else if (index.isEmpty()) {
+			frozen = budgeted(other);
+		} else {
+			copy(other);
+		}
+		changed();
+	}
+
+	/**
+	 * Copies a frozen index into the maps of this index.
+	 *
+	 * @param other the frozen index to copy
+	 */
+	private void copy(FrozenIndex other) {
+		int[] ids = new int[other.locationCount()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = locationId(other.location(i));
+		}
+
+		int w = 0;
+		for (String word : other.words()) {
+			PostingList ours = postingList(word);
+			for (int p = other.start(w); p < other.end(w); p++) {
+				int id = ids[other.id(p)];
+				PositionList theirs = other.positions(p);
+				PositionList positions = ours.get(id);
+				int added = theirs.size();
+				if (positions == null) {
+					ours.put(id, theirs);
+				} else {
+					added = positions.addAll(theirs);
+					countsIndex[id] -= theirs.size() - added;
+				}
+				prefixes.add(word, id, added);
+			}
+			w++;
+		}
+
+		for (int i = 0; i < ids.length; i++) {
+			countsIndex[ids[i]] += other.count(i);
+		}
 	}
 
 	/**
@@ -90,7 +464,12 @@ public class InvertedIndex {
 	 * @throws IOException throws IO Exception
 	 */
 	public void toJson(Path path) throws IOException {
-		SimpleJsonWriter.asDoubleNestedObject(index, path);
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			snapshot.toJson(path);
+			return;
+		}
+		SimpleJsonWriter.asDoubleNestedObject(new LocationView(), path);
 	}
 
 	/**
@@ -100,7 +479,18 @@ public class InvertedIndex {
 	 * @throws IOException throws IOException
 	 */
 	public void countToJson(Path path) throws IOException {
-		SimpleJsonWriter.asObject(countsIndex, path);
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			snapshot.countToJson(path);
+			return;
+		}
+		TreeMap<String, Integer> counts = new TreeMap<>();
+		for (int i = 0; i < locations.size(); i++) {
+			if (countsIndex[i] > 0) {
+				counts.put(locations.get(i), countsIndex[i]);
+			}
+		}
+		SimpleJsonWriter.asObject(counts, path);
 	}
 
 	/**
@@ -109,9 +499,64 @@ public class InvertedIndex {
 	 * @return size of index
 	 */
 	public int size() {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.size();
+		}
 		return index.size();
 	}
 
+	/**
+	 * Number of positions stored across every word and location
+	 *
+	 * @return total number of postings
+	 */
+	public long postings() {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.postings();
+		}
+		long total = 0;
+		for (int i = 0; i < locations.size(); i++) {
+			total += countsIndex[i];
+		}
+		return total;
+	}
+
+	/**
+	 * Estimates the heap space used by the stored positions, including the per word and per location
+	 * list objects but not the word or location keys.
+	 *
+	 * @return the estimated number of bytes
+	 */
+	public long postingBytes() {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.postingBytes();
+		}
+		long total = 0;
+		for (PostingList postings : index.values()) {
+			total += postings.sizeInBytes();
+		}
+		return total;
+	}
+
+	/**
+	 * Average estimated number of bytes used to store one position
+	 *
+	 * @return bytes per posting, or 0 if the index is empty
+	 * @see #postingBytes()
+	 * @see #postings()
+	 */
+	public double bytesPerPosting() {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.bytesPerPosting();
+		}
+		long postings = postings();
+		return postings == 0 ? 0 : (double) postingBytes() / postings;
+	}
+
 	/**
 	 * Overriding the toString method
 	 *
@@ -119,7 +564,11 @@ public class InvertedIndex {
 	 */
 	@Override
 	public String toString() {
-		return index.toString();
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.toString();
+		}
+		return new LocationView().toString();
 	}
 
 	/**
@@ -129,6 +578,10 @@ public class InvertedIndex {
 	 * @return a boolean
 	 */
 	public boolean contains(String word) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.contains(word);
+		}
 		return index.containsKey(word);
 	}
 
@@ -138,6 +591,10 @@ public class InvertedIndex {
 	 * @return words as a Set, unmodifiable.
 	 */
 	public Set<String> getWords() {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.getWords();
+		}
 		return Collections.unmodifiableSet(this.index.keySet());
 	}
 
@@ -148,8 +605,17 @@ public class InvertedIndex {
 	 * @return a Set of Strings
 	 */
 	public Set<String> getLocations(String word) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.getLocations(word);
+		}
 		if (contains(word)) {
-			return Collections.unmodifiableSet(this.index.get(word).keySet());
+			PostingList postings = this.index.get(word);
+			TreeSet<String> found = new TreeSet<>();
+			for (int i = 0; i < postings.size(); i++) {
+				found.add(locations.get(postings.id(i)));
+			}
+			return Collections.unmodifiableSet(found);
 		}
 		return Collections.emptySet();
 	}
@@ -162,8 +628,12 @@ public class InvertedIndex {
 	 * @return a Set of Integers
 	 */
 	public Set<Integer> getPositions(String word, String location) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.getPositions(word, location);
+		}
 		if (contains(word, location)) {
-			return Collections.unmodifiableSet(this.index.get(word).get(location));
+			return Collections.unmodifiableSet(this.index.get(word).get(locations.find(location)));
 		}
 		return Collections.emptySet();
 	}
@@ -177,8 +647,12 @@ public class InvertedIndex {
 	 * @return a boolean
 	 */
 	public boolean contains(String word, String location, int position) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.contains(word, location, position);
+		}
 		if (contains(word, location)) {
-			return index.get(word).get(location).contains(position);
+			return index.get(word).get(locations.find(location)).contains(position);
 		}
 		return false;
 	}
@@ -191,8 +665,13 @@ public class InvertedIndex {
 	 * @return a boolean
 	 */
 	public boolean contains(String word, String location) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.contains(word, location);
+		}
 		if (contains(word)) {
-			return index.get(word).keySet().contains(location);
+			int id = locations.find(location);
+			return id >= 0 && index.get(word).get(id) != null;
 		}
 		return false;
 	}
@@ -214,19 +693,12 @@ public class InvertedIndex {
 	/**
 	 * Helper method which breaks down repeated code
 	 *
-	 * @param totalResults all the results
-	 * @param word         each word
-	 * @param resultsList  the list of results
-	 */
-	private void searchHelper(HashMap<String, QueryResult> totalResults, String word,
-			Collection<QueryResult> resultsList) {
-		for (String location : index.get(word).keySet()) {
-			if (!totalResults.containsKey(location)) {
-				QueryResult queryResult = new QueryResult(location);
-				totalResults.put(location, queryResult);
-				resultsList.add(queryResult);
-			}
-			totalResults.get(location).update(word);
+	 * @param accumulator the match counts so far
+	 * @param postings    the postings of one word
+	 */
+	private static void searchHelper(ScoreAccumulator accumulator, PostingList postings) {
+		for (int i = 0; i < postings.size(); i++) {
+			accumulator.add(postings.id(i), postings.frequency(i));
 		}
 	}
 
@@ -237,17 +709,11 @@ public class InvertedIndex {
 	 * @return return search results in a collection
 	 */
 	public Collection<QueryResult> exactSearch(Collection<String> queries) {
-		HashMap<String, QueryResult> totalResults = new HashMap<>();
-		ArrayList<QueryResult> collectionResults = new ArrayList<>();
-
-		for (String query : queries) {
-			if (index.containsKey(query)) {
-				searchHelper(totalResults, query, collectionResults);
-			}
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.exactSearch(queries);
 		}
-
-		Collections.sort(collectionResults);
-		return collectionResults;
+		return search(queries, true, Integer.MAX_VALUE);
 
 	}
 
@@ -258,22 +724,450 @@ public class InvertedIndex {
 	 * @return return search results in a collection
 	 */
 	public Collection<QueryResult> partialSearch(Collection<String> queries) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.partialSearch(queries);
+		}
+		return search(queries, false, Integer.MAX_VALUE);
 
-		HashMap<String, QueryResult> totalResults = new HashMap<>();
-		ArrayList<QueryResult> collectionResults = new ArrayList<>();
+	}
 
+	/**
+	 * Searches for queries like {@link #search(Collection, boolean, int)}, but lets a heavy search use
+	 * every core. Only a frozen snapshot is searched in parallel, see
+	 * {@link FrozenIndex#parallelSearch(Collection, boolean, int)}; otherwise this is the same as
+	 * {@link #search(Collection, boolean, int)}.
+	 *
+	 * @param queries to search with
+	 * @param exact   whether to do an exact search
+	 * @param k       the most results to return
+	 * @return the best {@code k} results, in the same order as {@link #chooseSearch(Collection, boolean)}
+	 */
+	public List<QueryResult> parallelSearch(Collection<String> queries, boolean exact, int k) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.parallelSearch(queries, exact, k);
+		}
+		return search(queries, exact, k);
+	}
+
+	/**
+	 * Searches for queries and keeps only the best results. This is cheaper than sorting every match
+	 * when only the first page, or only the first result, is needed.
+	 *
+	 * @param queries to search with
+	 * @param exact   whether to do an exact search
+	 * @param k       the most results to return
+	 * @return the best {@code k} results, in the same order as {@link #chooseSearch(Collection, boolean)}
+	 */
+	public List<QueryResult> search(Collection<String> queries, boolean exact, int k) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.search(queries, exact, k);
+		}
+		ScoreAccumulator accumulator = ScoreAccumulator.get(locations.size());
 		for (String query : queries) {
-			for (String word : index.tailMap(query).keySet()) {
-				if (word.startsWith(query)) {
-					searchHelper(totalResults, word, collectionResults);
+			if (exact) {
+				PostingList postings = index.get(query);
+				if (postings != null) {
+					searchHelper(accumulator, postings);
+				}
+				continue;
+			}
+			int[] table = prefixes.lookup(query);
+			if (table != null) {
+				accumulator.addAll(table);
+				continue;
+			}
+			if (prefixes.wanted(query)) {
+				table = new int[locations.size()];
+				long postings = 0;
+				for (Map.Entry<String, PostingList> entry : index.tailMap(query).entrySet()) {
+					if (!entry.getKey().startsWith(query)) {
+						break;
+					}
+					PostingList found = entry.getValue();
+					for (int i = 0; i < found.size(); i++) {
+						table[found.id(i)] += found.frequency(i);
+					}
+					postings += found.size();
+				}
+				prefixes.offer(query, table, postings);
+				accumulator.addAll(table);
+				continue;
+			}
+			for (Map.Entry<String, PostingList> entry : index.tailMap(query).entrySet()) {
+				if (entry.getKey().startsWith(query)) {
+					searchHelper(accumulator, entry.getValue());
 				} else {
 					break;
 				}
 			}
 		}
+		return accumulator.results(k, locations::get, id -> countsIndex[id]);
+	}
+
+	/**
+	 * Searches for the words that are within a few edits of each query, so a misspelled query still
+	 * finds something. Each query expands to at most {@link LevenshteinAutomaton#DEFAULT_LIMIT} of the
+	 * closest words, allowing {@link LevenshteinAutomaton#maxEdits(String)} edits, and the words are
+	 * then searched for exactly.
+	 *
+	 * @param queries to search with
+	 * @return the sorted results
+	 */
+	public Collection<QueryResult> fuzzySearch(Collection<String> queries) {
+		TreeSet<String> words = new TreeSet<>();
+		for (String query : queries) {
+			words.addAll(fuzzyTerms(query, LevenshteinAutomaton.maxEdits(query), LevenshteinAutomaton.DEFAULT_LIMIT));
+		}
+		return exactSearch(words);
+	}
+
+	/**
+	 * Finds the words in the index within a number of edits of a word.
+	 *
+	 * @param word     the word
+	 * @param maxEdits the most insertions, deletions or substitutions
+	 * @param limit    the most words to return
+	 * @return the closest words first, and in order when they are equally close
+	 */
+	public List<String> fuzzyTerms(String word, int maxEdits, int limit) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.fuzzyTerms(word, maxEdits, limit);
+		}
+		return new LevenshteinAutomaton(word, maxEdits).match(index::ceilingKey, limit);
+	}
+
+	/**
+	 * Returns the first word in the index that is not less than a string.
+	 *
+	 * @param key the string
+	 * @return the word, or {@code null} if every word is less
+	 */
+	String ceiling(String key) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.ceiling(key);
+		}
+		return index.ceilingKey(key);
+	}
+
+	/**
+	 * Searches for the words matching wildcard patterns such as {@code *tion} or {@code *graph*}. The
+	 * matching words are found through a k-gram index rather than by reading every word, and are then
+	 * searched for exactly.
+	 *
+	 * @param patterns the patterns, where {@code *} matches any number of letters
+	 * @return the sorted results
+	 */
+	public Collection<QueryResult> wildcardSearch(Collection<String> patterns) {
+		TreeSet<String> words = new TreeSet<>();
+		for (String pattern : patterns) {
+			words.addAll(wildcardTerms(pattern));
+		}
+		return exactSearch(words);
+	}
+
+	/**
+	 * Finds the words in the index matching a wildcard pattern. The k-gram index is built the first
+	 * time it is needed, so indexes that are never searched this way do not pay for it.
+	 *
+	 * @param pattern the pattern, where {@code *} matches any number of letters
+	 * @return the matching words, in order
+	 */
+	public List<String> wildcardTerms(String pattern) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.wildcardTerms(pattern);
+		}
+		KGramIndex known = grams;
+		if (known == null) {
+			// concurrent readers may get here together, but never while a word is being added
+			synchronized (this) {
+				known = grams;
+				if (known == null) {
+					known = new KGramIndex();
+					for (String word : index.keySet()) {
+						known.add(word);
+					}
+					grams = known;
+				}
+			}
+		}
+		List<String> words = known.match(pattern);
+		Collections.sort(words);
+		return words;
+	}
+
+	/**
+	 * Finds the locations where the words of a phrase appear one right after another. Locations that
+	 * do not have every word are ruled out by their ids before any positions are read.
+	 *
+	 * @param phrase the stemmed words of the phrase, in order
+	 * @return the sorted results, where the match count is the number of times the phrase appears
+	 */
+	public Collection<QueryResult> phraseSearch(List<String> phrase) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.phraseSearch(phrase);
+		}
+
+		PostingList[] postings = new PostingList[phrase.size()];
+		int rarest = 0;
+		for (int i = 0; i < postings.length; i++) {
+			postings[i] = index.get(phrase.get(i));
+			if (postings[i] == null) {
+				return new ArrayList<>();
+			}
+			if (postings[i].size() < postings[rarest].size()) {
+				rarest = i;
+			}
+		}
+		if (postings.length == 0) {
+			return new ArrayList<>();
+		}
+
+		ScoreAccumulator accumulator = ScoreAccumulator.get(locations.size());
+		PositionList[] lists = new PositionList[postings.length];
+		int[][] positions = new int[postings.length][];
+		candidates: for (int c = 0; c < postings[rarest].size(); c++) {
+			int id = postings[rarest].id(c);
+			for (int i = 0; i < postings.length; i++) {
+				lists[i] = postings[i].get(id);
+				if (lists[i] == null) {
+					continue candidates;
+				}
+			}
+			for (int i = 0; i < postings.length; i++) {
+				positions[i] = lists[i].toIntArray();
+			}
+			int found = phraseMatches(positions);
+			if (found > 0) {
+				accumulator.add(id, found);
+			}
+		}
+		return accumulator.results(Integer.MAX_VALUE, locations::get, id -> countsIndex[id]);
+	}
+
+	/**
+	 * Finds the locations that match a Boolean query.
+	 *
+	 * @param query the query
+	 * @param exact whether words must match exactly or may match as a prefix
+	 * @return the sorted results
+	 */
+	public Collection<QueryResult> booleanSearch(BooleanQuery query, boolean exact) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.booleanSearch(query, exact);
+		}
+		return query.search(new BooleanQuery.Source() {
+
+			@Override
+			public BooleanQuery.Postings word(String word) {
+				return index.get(word);
+			}
+
+			@Override
+			public List<BooleanQuery.Postings> prefix(String prefix) {
+				ArrayList<BooleanQuery.Postings> found = new ArrayList<>();
+				for (Map.Entry<String, PostingList> entry : index.tailMap(prefix).entrySet()) {
+					if (!entry.getKey().startsWith(prefix)) {
+						break;
+					}
+					found.add(entry.getValue());
+				}
+				return found;
+			}
+
+			@Override
+			public int locations() {
+				return locations.size();
+			}
+		}, exact, locations::get, id -> countsIndex[id]);
+	}
+
+	/**
+	 * Counts how many times a phrase starts in one location.
+	 *
+	 * @param positions the sorted positions of each word of the phrase in that location
+	 * @return the number of positions where every word follows the one before it
+	 */
+	static int phraseMatches(int[][] positions) {
+		int[] cursors = new int[positions.length];
+		int found = 0;
+		starts: for (int start : positions[0]) {
+			for (int i = 1; i < positions.length; i++) {
+				int[] list = positions[i];
+				while (cursors[i] < list.length && list[cursors[i]] < start + i) {
+					cursors[i]++;
+				}
+				if (cursors[i] == list.length) {
+					return found;
+				}
+				if (list[cursors[i]] != start + i) {
+					continue starts;
+				}
+			}
+			found++;
+		}
+		return found;
+	}
 
-		Collections.sort(collectionResults);
-		return collectionResults;
+	/**
+	 * Returns how many times a word is found in each location, for searches that combine several
+	 * indexes. Unlike a search, nothing is scored, so this can be called while a search is scoring.
+	 *
+	 * @param word   the word
+	 * @param prefix whether to count every word that starts with {@code word} instead
+	 * @return the frequency for each location that has the word, added up over the matching words
+	 */
+	Map<String, Integer> frequencies(String word, boolean prefix) {
+		HashMap<String, Integer> found = new HashMap<>();
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			TermDictionary words = snapshot.words();
+			int start = prefix ? words.prefixStart(word) : words.find(word);
+			int end = prefix ? words.prefixEnd(word) : start + 1;
+			for (int w = Math.max(start, 0); w < end; w++) {
+				for (int p = snapshot.start(w); p < snapshot.end(w); p++) {
+					found.merge(snapshot.location(snapshot.id(p)), snapshot.frequency(p), Integer::sum);
+				}
+			}
+			return found;
+		}
+
+		for (Map.Entry<String, PostingList> entry : index.tailMap(word).entrySet()) {
+			if (prefix ? !entry.getKey().startsWith(word) : !entry.getKey().equals(word)) {
+				break;
+			}
+			PostingList postings = entry.getValue();
+			for (int i = 0; i < postings.size(); i++) {
+				found.merge(locations.get(postings.id(i)), postings.frequency(i), Integer::sum);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the positions of a word in some locations, for searches that combine several indexes.
+	 *
+	 * @param word   the word
+	 * @param within the locations to look in
+	 * @return the sorted positions for each of those locations that has the word
+	 */
+	Map<String, int[]> positions(String word, Collection<String> within) {
+		HashMap<String, int[]> found = new HashMap<>();
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			for (String location : within) {
+				Set<Integer> positions = snapshot.getPositions(word, location);
+				if (!positions.isEmpty()) {
+					found.put(location, positions.stream().mapToInt(Integer::intValue).toArray());
+				}
+			}
+			return found;
+		}
+
+		PostingList postings = index.get(word);
+		if (postings != null) {
+			for (String location : within) {
+				int id = locations.find(location);
+				PositionList positions = id < 0 ? null : postings.get(id);
+				if (positions != null) {
+					found.put(location, positions.toIntArray());
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Selects the best results in {@link QueryResult#compareTo(QueryResult)} order. A single result is
+	 * found with one scan, and otherwise a heap of at most {@code k} results is kept, so only the
+	 * results that are returned get sorted.
+	 *
+	 * @param results the unsorted results, which may be reordered
+	 * @param k       the most results to return
+	 * @return the best {@code k} results, sorted
+	 */
+	static List<QueryResult> top(List<QueryResult> results, int k) {
+		if (k <= 0 || results.isEmpty()) {
+			return new ArrayList<>();
+		}
+		if (k >= results.size()) {
+			Collections.sort(results);
+			return results;
+		}
+		if (k == 1) {
+			QueryResult best = results.get(0);
+			for (QueryResult result : results) {
+				if (result.compareTo(best) < 0) {
+					best = result;
+				}
+			}
+			ArrayList<QueryResult> single = new ArrayList<>(1);
+			single.add(best);
+			return single;
+		}
+
+		// the head of the heap is the worst of the best k seen so far
+		PriorityQueue<QueryResult> heap = new PriorityQueue<>(k + 1, Collections.reverseOrder());
+		for (QueryResult result : results) {
+			if (heap.size() < k) {
+				heap.add(result);
+			} else if (result.compareTo(heap.peek()) < 0) {
+				heap.poll();
+				heap.add(result);
+			}
+		}
+		ArrayList<QueryResult> best = new ArrayList<>(heap);
+		Collections.sort(best);
+		return best;
+	}
+
+	/**
+	 * Read-only view of the index keyed by location strings instead of ids, in the same shape the
+	 * index used to be stored in. Each word's locations are only translated and sorted when the view
+	 * reaches that word, so writing the index out does not need a second copy of it.
+	 */
+	private class LocationView extends AbstractMap<String, TreeMap<String, PositionList>> {
+
+		@Override
+		public Set<Map.Entry<String, TreeMap<String, PositionList>>> entrySet() {
+			return new AbstractSet<>() {
+
+				@Override
+				public Iterator<Map.Entry<String, TreeMap<String, PositionList>>> iterator() {
+					Iterator<Map.Entry<String, PostingList>> words = index.entrySet().iterator();
+					return new Iterator<>() {
+
+						@Override
+						public boolean hasNext() {
+							return words.hasNext();
+						}
+
+						@Override
+						public Map.Entry<String, TreeMap<String, PositionList>> next() {
+							Map.Entry<String, PostingList> entry = words.next();
+							PostingList postings = entry.getValue();
+							TreeMap<String, PositionList> byLocation = new TreeMap<>();
+							for (int i = 0; i < postings.size(); i++) {
+								byLocation.put(locations.get(postings.id(i)), postings.positions(i));
+							}
+							return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), byLocation);
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return index.size();
+				}
+			};
+		}
 
 	}
 
@@ -284,10 +1178,11 @@ public class InvertedIndex {
 	 * @author Sophia
 	 * @version Spring 2020
 	 */
-	public class QueryResult implements Comparable<QueryResult> {
+	public static class QueryResult implements Comparable<QueryResult> {
 
-		/** Proper formatting for the queries. */
-		private final DecimalFormat SCORE_FORMAT = new DecimalFormat("0.00000000");
+		/** Proper formatting for the queries, shared by every result of a thread. */
+		private static final ThreadLocal<DecimalFormat> SCORE_FORMAT = ThreadLocal
+				.withInitial(() -> new DecimalFormat("0.00000000"));
 
 		/** Location */
 		private final String location;
@@ -298,6 +1193,9 @@ public class InvertedIndex {
 		/** Score */
 		private double score;
 
+		/** The word count of the location the score was divided by */
+		private int count;
+
 		/**
 		 * initializes QueryResult
 		 *
@@ -307,6 +1205,22 @@ public class InvertedIndex {
 		public QueryResult(String location) {
 			this.location = location;
 			this.matches = 0;
+			this.count = 0;
+		}
+
+		/**
+		 * initializes a QueryResult that has already been scored
+		 *
+		 * @param location the file location
+		 * @param matches  the number of matches
+		 * @param count    the word count of the location
+		 * @param score    the score
+		 */
+		QueryResult(String location, int matches, int count, double score) {
+			this.location = location;
+			this.matches = matches;
+			this.count = count;
+			this.score = score;
 		}
 
 		/**
@@ -337,15 +1251,25 @@ public class InvertedIndex {
 		}
 
 		/**
-		 * Helper method, figures out from the index directly how many more matches to add calculates the
-		 * score
+		 * Helper method, gets the word count of the location, which the score is the matches over.
+		 *
+		 * @return the word count
+		 */
+		int getWordCount() {
+			return this.count;
+		}
+
+		/**
+		 * Helper method, adds more matches and recalculates the score
 		 *
-		 * @param word takes in the word to update the matches and score for that word
+		 * @param found how many more times a query word was found in this location
+		 * @param total the total word count of this location
 		 *
 		 */
-		private void update(String word) {
-			this.matches += index.get(word).get(location).size();
-			this.score = (double) this.matches / countsIndex.get(location);
+		void update(int found, int total) {
+			this.matches += found;
+			this.count = total;
+			this.score = (double) this.matches / total;
 		}
 
 		/**
@@ -354,7 +1278,7 @@ public class InvertedIndex {
 		 * @return a string, the output / score.
 		 */
 		public String getScoreString() {
-			return SCORE_FORMAT.format(this.score);
+			return SCORE_FORMAT.get().format(this.score);
 		}
 
 		/**
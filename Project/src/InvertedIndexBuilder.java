@@ -5,7 +5,6 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
-import opennlp.tools.stemmer.Stemmer;
 import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
@@ -49,12 +48,14 @@ public class InvertedIndexBuilder {
 	public static void parseTextFile(Path fileName, InvertedIndex index) throws IOException {
 		String currLine;
 		Integer counter = 1;
-		Stemmer snowball = new SnowballStemmer(DEFAULT);
+		StemCache stems = StemCache.shared();
+		TextTokenizer tokens = new TextTokenizer();
 		String location = fileName.toString();
 		try (BufferedReader read = Files.newBufferedReader(fileName, StandardCharsets.UTF_8)) {
 			while ((currLine = read.readLine()) != null) {
-				for (String word : TextParser.parse(currLine)) {
-					word = snowball.stem(word).toString();
+				tokens.reset(currLine);
+				for (String word = tokens.next(); word != null; word = tokens.next()) {
+					word = stems.stem(word);
 					index.add(word, location, counter);
 					counter++;
 				}
@@ -0,0 +1,239 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Finds the words of a dictionary that match a wildcard pattern such as {@code *tion} or
+ * {@code *graph*}, without reading every word. Each word is wrapped in {@code $} markers and split
+ * into overlapping pairs of letters, and the ids of the words are listed under every pair. A
+ * pattern is split the same way around its wildcards, the lists of its pairs are intersected to find
+ * the candidates, and only the candidates are checked against the pattern.
+ *
+ * Words must be added in increasing id order, which keeps every list sorted.
+ *
+ * @author Sophia
+ *
+ */
+class KGramIndex {
+
+	/** The number of letters in a gram. */
+	private static final int K = 2;
+
+	/** Marks the start and end of a word. */
+	private static final char BOUNDARY = '$';
+
+	/** The ids of the words containing each gram, in increasing order. */
+	private final HashMap<String, Ids> grams;
+
+	/** Returns the word with an id. */
+	private final IntFunction<String> words;
+
+	/** The words added by {@link #add(String)}, or {@code null} if the words are looked up elsewhere. */
+	private final ArrayList<String> added;
+
+	/** The number of words indexed. */
+	private int size;
+
+	/**
+	 * Initializes an empty index that keeps the words added with {@link #add(String)}.
+	 */
+	KGramIndex() {
+		this.grams = new HashMap<>();
+		this.added = new ArrayList<>();
+		this.words = added::get;
+		this.size = 0;
+	}
+
+	/**
+	 * Indexes every word of a dictionary, using the ids of the dictionary.
+	 *
+	 * @param dictionary the dictionary
+	 */
+	KGramIndex(TermDictionary dictionary) {
+		this.grams = new HashMap<>();
+		this.added = null;
+		this.words = dictionary::get;
+		this.size = 0;
+		for (String word : dictionary) {
+			index(size++, word);
+		}
+	}
+
+	/**
+	 * Adds a new word.
+	 *
+	 * @param word the word, which must not have been added before
+	 */
+	void add(String word) {
+		added.add(word);
+		index(size++, word);
+	}
+
+	/**
+	 * Lists a word under each of its grams.
+	 *
+	 * @param id   the id of the word
+	 * @param word the word
+	 */
+	private void index(int id, String word) {
+		String wrapped = BOUNDARY + word + BOUNDARY;
+		HashSet<String> seen = new HashSet<>();
+		for (int i = 0; i + K <= wrapped.length(); i++) {
+			String gram = wrapped.substring(i, i + K);
+			if (seen.add(gram)) {
+				grams.computeIfAbsent(gram, g -> new Ids()).add(id);
+			}
+		}
+	}
+
+	/**
+	 * Finds the words matching a pattern.
+	 *
+	 * @param pattern the pattern, where {@code *} matches any number of letters
+	 * @return the matching words, in id order
+	 */
+	List<String> match(String pattern) {
+		ArrayList<String> found = new ArrayList<>();
+		int[] candidates = candidates(pattern);
+		if (candidates == null) {
+			// too few letters to narrow anything down
+			for (int id = 0; id < size; id++) {
+				String word = words.apply(id);
+				if (matches(pattern, word)) {
+					found.add(word);
+				}
+			}
+			return found;
+		}
+		for (int id : candidates) {
+			String word = words.apply(id);
+			if (matches(pattern, word)) {
+				found.add(word);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Intersects the lists of the grams of a pattern, rarest first.
+	 *
+	 * @param pattern the pattern
+	 * @return the ids of the words that have every gram, or {@code null} if the pattern has no grams
+	 */
+	private int[] candidates(String pattern) {
+		String wrapped = (pattern.startsWith("*") ? "" : BOUNDARY) + pattern
+				+ (pattern.endsWith("*") ? "" : BOUNDARY);
+
+		ArrayList<Ids> lists = new ArrayList<>();
+		for (String segment : wrapped.split("\\*")) {
+			for (int i = 0; i + K <= segment.length(); i++) {
+				Ids ids = grams.get(segment.substring(i, i + K));
+				if (ids == null) {
+					return new int[0];
+				}
+				lists.add(ids);
+			}
+		}
+		if (lists.isEmpty()) {
+			return null;
+		}
+
+		lists.sort((a, b) -> Integer.compare(a.size, b.size));
+		int[] result = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+		int length = result.length;
+		for (int l = 1; l < lists.size() && length > 0; l++) {
+			Ids other = lists.get(l);
+			int kept = 0;
+			int j = 0;
+			for (int i = 0; i < length; i++) {
+				while (j < other.size && other.ids[j] < result[i]) {
+					j++;
+				}
+				if (j < other.size && other.ids[j] == result[i]) {
+					result[kept++] = result[i];
+				}
+			}
+			length = kept;
+		}
+		return Arrays.copyOf(result, length);
+	}
+
+	/**
+	 * Checks a word against a pattern.
+	 *
+	 * @param pattern the pattern, where {@code *} matches any number of letters
+	 * @param word    the word
+	 * @return {@code true} if the whole word matches
+	 */
+	static boolean matches(String pattern, String word) {
+		int p = 0;
+		int w = 0;
+		// where the last star was, and how much of the word it has taken so far
+		int star = -1;
+		int taken = 0;
+		while (w < word.length()) {
+			if (p < pattern.length() && pattern.charAt(p) == '*') {
+				star = p++;
+				taken = w;
+			} else if (p < pattern.length() && pattern.charAt(p) == word.charAt(w)) {
+				p++;
+				w++;
+			} else if (star >= 0) {
+				p = star + 1;
+				w = ++taken;
+			} else {
+				return false;
+			}
+		}
+		while (p < pattern.length() && pattern.charAt(p) == '*') {
+			p++;
+		}
+		return p == pattern.length();
+	}
+
+	/**
+	 * Number of words
+	 *
+	 * @return the number of words indexed
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * A growing sorted list of word ids.
+	 */
+	private static class Ids {
+
+		/** The ids. */
+		private int[] ids;
+
+		/** The number of ids. */
+		private int size;
+
+		/**
+		 * Initializes an empty list.
+		 */
+		public Ids() {
+			this.ids = new int[4];
+			this.size = 0;
+		}
+
+		/**
+		 * Adds an id larger than every id so far.
+		 *
+		 * @param id the id
+		 */
+		public void add(int id) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+
+	}
+
+}
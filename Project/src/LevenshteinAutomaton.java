@@ -0,0 +1,189 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Finds the words of a sorted dictionary within a few edits of a word. The automaton that accepts
+ * every string within {@code maxEdits} insertions, deletions or substitutions of the word is run
+ * one character at a time, with each state kept as a row of edit distances. Since the dictionary is
+ * sorted, the rows for the prefix a word shares with the word before it are reused, and as soon as
+ * every distance in a row is too large the automaton is dead and the dictionary is skipped past
+ * every word with that prefix, so only the branches that could still match are read.
+ *
+ * @author Sophia
+ *
+ */
+class LevenshteinAutomaton {
+
+	/** The most dictionary words a query word expands to. */
+	static final int DEFAULT_LIMIT = 50;
+
+	/** The word to match. */
+	private final String word;
+
+	/** The most edits allowed. */
+	private final int maxEdits;
+
+	/** The row of edit distances after each character of the current dictionary word. */
+	private int[][] rows;
+
+	/**
+	 * Initializes an automaton.
+	 *
+	 * @param word     the word to match
+	 * @param maxEdits the most edits allowed
+	 */
+	LevenshteinAutomaton(String word, int maxEdits) {
+		this.word = word;
+		this.maxEdits = Math.max(0, maxEdits);
+		this.rows = new int[word.length() + maxEdits + 1][];
+		int[] first = new int[word.length() + 1];
+		for (int j = 0; j < first.length; j++) {
+			first[j] = j;
+		}
+		rows[0] = first;
+	}
+
+	/**
+	 * Returns how many edits a misspelled word may be off by. Short words match too much with more
+	 * edits, so they get fewer.
+	 *
+	 * @param word the word
+	 * @return 0 for words of up to two letters, 1 for up to five and 2 for longer words
+	 */
+	static int maxEdits(String word) {
+		return word.length() <= 2 ? 0 : word.length() <= 5 ? 1 : 2;
+	}
+
+	/**
+	 * Finds the dictionary words within the allowed edits, closest first.
+	 *
+	 * @param ceiling returns the first dictionary word not less than a string, or {@code null} if there
+	 *                is none
+	 * @param limit   the most words to return
+	 * @return the words, sorted by their number of edits and then by word
+	 */
+	List<String> match(UnaryOperator<String> ceiling, int limit) {
+		ArrayList<String> found = new ArrayList<>();
+		ArrayList<Integer> distances = new ArrayList<>();
+
+		// rows are filled in for this many characters of the previous word
+		String previous = "";
+		int filled = 0;
+
+		String term = ceiling.apply("");
+		while (term != null) {
+			int depth = Math.min(common(previous, term), filled);
+			int dead = -1;
+			while (depth < term.length()) {
+				step(depth, term.charAt(depth));
+				depth++;
+				if (min(rows[depth]) > maxEdits) {
+					dead = depth;
+					break;
+				}
+			}
+			previous = term;
+			filled = depth;
+
+			if (dead >= 0) {
+				// nothing starting with this prefix can match, so skip every word that does
+				String next = successor(term.substring(0, dead));
+				term = next == null ? null : ceiling.apply(next);
+				continue;
+			}
+
+			int distance = rows[term.length()][word.length()];
+			if (distance <= maxEdits) {
+				found.add(term);
+				distances.add(distance);
+			}
+			term = ceiling.apply(term + '\0');
+		}
+
+		Integer[] order = new Integer[found.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		// the words were found in order, and the sort is stable
+		Arrays.sort(order, Comparator.comparingInt(distances::get));
+		ArrayList<String> closest = new ArrayList<>(Math.min(limit, order.length));
+		for (int i = 0; i < order.length && closest.size() < limit; i++) {
+			closest.add(found.get(order[i]));
+		}
+		return closest;
+	}
+
+	/**
+	 * Moves the automaton along one character, filling in the row after it.
+	 *
+	 * @param depth the number of characters read so far
+	 * @param c     the next character
+	 */
+	private void step(int depth, char c) {
+		if (depth + 1 >= rows.length) {
+			rows = Arrays.copyOf(rows, Math.max(depth + 2, rows.length * 2));
+		}
+		int[] before = rows[depth];
+		int[] after = rows[depth + 1];
+		if (after == null) {
+			after = new int[word.length() + 1];
+			rows[depth + 1] = after;
+		}
+		after[0] = depth + 1;
+		for (int j = 1; j <= word.length(); j++) {
+			int substitute = before[j - 1] + (word.charAt(j - 1) == c ? 0 : 1);
+			after[j] = Math.min(substitute, Math.min(before[j], after[j - 1]) + 1);
+		}
+	}
+
+	/**
+	 * Returns the smallest value in a row.
+	 *
+	 * @param row the row
+	 * @return the smallest edit distance
+	 */
+	private static int min(int[] row) {
+		int min = row[0];
+		for (int value : row) {
+			min = Math.min(min, value);
+		}
+		return min;
+	}
+
+	/**
+	 * Returns the length of the longest common prefix of two strings.
+	 *
+	 * @param a the first string
+	 * @param b the second string
+	 * @return the number of leading characters they share
+	 */
+	private static int common(String a, String b) {
+		int length = Math.min(a.length(), b.length());
+		int i = 0;
+		while (i < length && a.charAt(i) == b.charAt(i)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the smallest string greater than every string starting with a prefix.
+	 *
+	 * @param prefix the prefix
+	 * @return the string, or {@code null} if there is none
+	 */
+	private static String successor(String prefix) {
+		int end = prefix.length();
+		while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+			end--;
+		}
+		if (end == 0) {
+			return null;
+		}
+		return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+	}
+
+}
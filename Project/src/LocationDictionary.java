@@ -0,0 +1,87 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Assigns dense integer ids to locations (file paths or URLs) so the index can refer to a location
+ * by id instead of by its full string. Ids are handed out in the order locations are first seen,
+ * starting at 0.
+ *
+ * Warning: This class is not thread-safe.
+ *
+ * @author Sophia
+ *
+ */
+public class LocationDictionary {
+
+	/** The location for each id. */
+	private final ArrayList<String> locations;
+
+	/** The id for each location. */
+	private final HashMap<String, Integer> ids;
+
+	/**
+	 * Initializes an empty dictionary.
+	 */
+	public LocationDictionary() {
+		this.locations = new ArrayList<>();
+		this.ids = new HashMap<>();
+	}
+
+	/**
+	 * Returns the id of the location, assigning the next free id if the location has not been seen.
+	 *
+	 * @param location the location to look up
+	 * @return the id of the location
+	 */
+	public int add(String location) {
+		Integer id = ids.get(location);
+		if (id == null) {
+			id = locations.size();
+			locations.add(location);
+			ids.put(location, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the id of the location without assigning one.
+	 *
+	 * @param location the location to look up
+	 * @return the id of the location, or -1 if the location has not been seen
+	 */
+	public int find(String location) {
+		Integer id = ids.get(location);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the location for an id.
+	 *
+	 * @param id the id to look up
+	 * @return the location with that id
+	 */
+	public String get(int id) {
+		return locations.get(id);
+	}
+
+	/**
+	 * Number of locations
+	 *
+	 * @return the number of ids handed out
+	 */
+	public int size() {
+		return locations.size();
+	}
+
+	/**
+	 * Returns every location ordered by id.
+	 *
+	 * @return an unmodifiable list of locations
+	 */
+	public List<String> locations() {
+		return Collections.unmodifiableList(locations);
+	}
+
+}
@@ -0,0 +1,305 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the best results of a search over a {@link FrozenIndex} without scoring every location,
+ * using MaxScore pruning. Every word has an upper bound on the score it can add to a location,
+ * {@link FrozenIndex#maxScore(int)}. Once {@code k} results have been found, words whose bounds add
+ * up to less than the worst of them cannot put a location in the results alone, so only the
+ * postings of the other words are walked, and the rest are only looked up for locations that could
+ * still make it.
+ *
+ * Locations are compared exactly like {@link InvertedIndex.QueryResult#compareTo}, so the results
+ * are the same as ranking every match and keeping the first {@code k}.
+ *
+ * @author Sophia
+ *
+ */
+class MaxScoreSearch {
+
+	/** The most words to search this way; more words are cheaper to add up all at once. */
+	static final int MAX_TERMS = 32;
+
+	/** The index being searched. */
+	private final FrozenIndex index;
+
+	/** The words, sorted by bound from lowest to highest. */
+	private final int[] terms;
+
+	/** The sum of the bounds of each word and every word before it. */
+	private final double[] bounds;
+
+	/** The next posting of each word. */
+	private final int[] next;
+
+	/** One past the last posting of each word. */
+	private final int[] end;
+
+	/** The most results to keep. */
+	private final int k;
+
+	/** The location ids of the results so far, as a heap with the worst on top. */
+	private final int[] heap;
+
+	/** The matches of each id in {@link #heap}. */
+	private final int[] heapMatches;
+
+	/** The score of each id in {@link #heap}. */
+	private final double[] heapScores;
+
+	/** The number of results so far. */
+	private int size;
+
+	/**
+	 * Prepares a search.
+	 *
+	 * @param index the index to search
+	 * @param words the indices of the words to search for, repeated when a query counts a word twice
+	 * @param k     the most results to keep, which must be positive
+	 */
+	private MaxScoreSearch(FrozenIndex index, int[] words, int k) {
+		this.index = index;
+		this.k = k;
+
+		Integer[] order = new Integer[words.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		double[] bound = new double[words.length];
+		for (int i = 0; i < words.length; i++) {
+			bound[i] = index.maxScore(words[i]);
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(bound[a], bound[b]));
+
+		this.terms = new int[words.length];
+		this.bounds = new double[words.length];
+		this.next = new int[words.length];
+		this.end = new int[words.length];
+		double sum = 0;
+		for (int i = 0; i < order.length; i++) {
+			int w = words[order[i]];
+			terms[i] = w;
+			sum += bound[order[i]];
+			bounds[i] = sum;
+			next[i] = index.start(w);
+			end[i] = index.end(w);
+		}
+
+		int capacity = Math.min(k, index.locationCount());
+		this.heap = new int[capacity];
+		this.heapMatches = new int[capacity];
+		this.heapScores = new double[capacity];
+		this.size = 0;
+	}
+
+	/**
+	 * Searches for words and keeps the best results.
+	 *
+	 * @param index the index to search
+	 * @param words the indices of the words to search for, repeated when a query counts a word twice
+	 * @param k     the most results to keep, which must be positive
+	 * @return the best {@code k} results, sorted
+	 */
+	static List<InvertedIndex.QueryResult> search(FrozenIndex index, int[] words, int k) {
+		return new MaxScoreSearch(index, words, k).run();
+	}
+
+	/**
+	 * Walks the postings and ranks the locations that could make it.
+	 *
+	 * @return the sorted results
+	 */
+	private List<InvertedIndex.QueryResult> run() {
+		// words before this one cannot put a location in the results on their own
+		int essential = 0;
+		double threshold = 0;
+
+		while (essential < terms.length) {
+			int id = Integer.MAX_VALUE;
+			for (int i = essential; i < terms.length; i++) {
+				if (next[i] < end[i]) {
+					id = Math.min(id, index.id(next[i]));
+				}
+			}
+			if (id == Integer.MAX_VALUE) {
+				break;
+			}
+
+			int matches = 0;
+			for (int i = essential; i < terms.length; i++) {
+				if (next[i] < end[i] && index.id(next[i]) == id) {
+					matches += index.frequency(next[i]);
+					next[i]++;
+				}
+			}
+
+			int count = index.count(id);
+			boolean possible = true;
+			for (int i = essential - 1; i >= 0; i--) {
+				// a tie could still win on matches, so only locations strictly below the worst are skipped
+				if ((double) matches / count + bounds[i] < threshold) {
+					possible = false;
+					break;
+				}
+				next[i] = seek(next[i], end[i], id);
+				if (next[i] < end[i] && index.id(next[i]) == id) {
+					matches += index.frequency(next[i]);
+					next[i]++;
+				}
+			}
+			if (!possible) {
+				continue;
+			}
+
+			if (offer(id, matches, (double) matches / count) && size == heap.length) {
+				threshold = heapScores[0];
+				while (essential < terms.length && bounds[essential] < threshold) {
+					essential++;
+				}
+			}
+		}
+
+		ArrayList<InvertedIndex.QueryResult> results = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			results.add(new InvertedIndex.QueryResult(index.location(heap[i]), heapMatches[i], index.count(heap[i]),
+					heapScores[i]));
+		}
+		Collections.sort(results);
+		return results;
+	}
+
+	/**
+	 * Adds a location to the results if it is better than the worst of them.
+	 *
+	 * @param id      the location id
+	 * @param matches the number of matches
+	 * @param score   the score
+	 * @return {@code true} if the results changed
+	 */
+	private boolean offer(int id, int matches, double score) {
+		if (heap.length == 0) {
+			return false;
+		}
+		if (size < heap.length) {
+			heap[size] = id;
+			heapMatches[size] = matches;
+			heapScores[size] = score;
+			siftUp(size++);
+			return true;
+		}
+		if (compare(score, matches, id, 0) >= 0) {
+			return false;
+		}
+		heap[0] = id;
+		heapMatches[0] = matches;
+		heapScores[0] = score;
+		siftDown(0);
+		return true;
+	}
+
+	/**
+	 * Compares a location to one in the heap the same way {@link InvertedIndex.QueryResult#compareTo}
+	 * does. Locations are sorted in a frozen index, so comparing ids compares the locations.
+	 *
+	 * @param score   the score of the location
+	 * @param matches the matches of the location
+	 * @param id      the location id
+	 * @param i       where the other location is in the heap
+	 * @return a negative number if the location ranks first
+	 */
+	private int compare(double score, int matches, int id, int i) {
+		if (score != heapScores[i]) {
+			return Double.compare(heapScores[i], score);
+		}
+		if (matches != heapMatches[i]) {
+			return Integer.compare(heapMatches[i], matches);
+		}
+		return Integer.compare(id, heap[i]);
+	}
+
+	/**
+	 * Moves an entry up the heap until its parent ranks after it.
+	 *
+	 * @param i where the entry is in the heap
+	 */
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (compare(heapScores[i], heapMatches[i], heap[i], parent) <= 0) {
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	/**
+	 * Moves an entry down the heap until both children rank before it.
+	 *
+	 * @param i where the entry is in the heap
+	 */
+	private void siftDown(int i) {
+		while (2 * i + 1 < size) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && compare(heapScores[child + 1], heapMatches[child + 1], heap[child + 1], child) > 0) {
+				child++;
+			}
+			if (compare(heapScores[child], heapMatches[child], heap[child], i) <= 0) {
+				break;
+			}
+			swap(i, child);
+			i = child;
+		}
+	}
+
+	/**
+	 * Swaps two entries of the heap.
+	 *
+	 * @param a the first entry
+	 * @param b the second entry
+	 */
+	private void swap(int a, int b) {
+		int id = heap[a];
+		heap[a] = heap[b];
+		heap[b] = id;
+		int matches = heapMatches[a];
+		heapMatches[a] = heapMatches[b];
+		heapMatches[b] = matches;
+		double score = heapScores[a];
+		heapScores[a] = heapScores[b];
+		heapScores[b] = score;
+	}
+
+	/**
+	 * Finds the first posting in a range whose location id is not less than an id, looking close by
+	 * first since the cursors only move forward.
+	 *
+	 * @param from the first posting to look at
+	 * @param to   one past the last posting to look at
+	 * @param id   the location id
+	 * @return the posting, or {@code to} if every id in the range is smaller
+	 */
+	private int seek(int from, int to, int id) {
+		int step = 1;
+		int low = from;
+		int high = from;
+		while (high < to && index.id(high) < id) {
+			low = high + 1;
+			high = from + step;
+			step <<= 1;
+		}
+		high = Math.min(high, to);
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (index.id(mid) < id) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+}
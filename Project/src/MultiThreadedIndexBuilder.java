@@ -4,11 +4,11 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import opennlp.tools.stemmer.Stemmer;
 import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
@@ -37,29 +37,115 @@ public class MultiThreadedIndexBuilder extends InvertedIndexBuilder {
 	 */
 	private final WorkQueue queue;
 
+	/**
+	 * Whether tasks build local indexes that are merged in a reduction tree instead of writing to the
+	 * shared index
+	 */
+	private final boolean reduce;
+
+	/**
+	 * The frozen local indexes waiting to be reduced
+	 */
+	private final ArrayList<FrozenIndex> locals;
+
 	/**
 	 * Constructor for multi-threaded indexBuilder
 	 *
-	 * @param index takes in an invertedIndex
-	 * @param queue queue for multi-threading
+	 * @param index  takes in an invertedIndex
+	 * @param queue  queue for multi-threading
+	 * @param reduce whether to merge local indexes in a reduction tree and only publish the result
 	 */
-	public MultiThreadedIndexBuilder(ThreadSafeInvertedIndex index, WorkQueue queue) {
+	public MultiThreadedIndexBuilder(ThreadSafeInvertedIndex index, WorkQueue queue, boolean reduce) {
 		super(index);
 		this.index = index;
 		this.queue = queue;
+		this.reduce = reduce;
+		this.locals = new ArrayList<>();
+	}
+
+	/**
+	 * Constructor for multi-threaded indexBuilder
+	 *
+	 * @param index takes in an invertedIndex
+	 * @param queue queue for multi-threading
+	 */
+	public MultiThreadedIndexBuilder(ThreadSafeInvertedIndex index, WorkQueue queue) {
+		this(index, queue, false);
 	}
 
 	@Override
 	public void parseDirectories(Path directory) throws IOException {
 		super.parseDirectories(directory);
 		queue.finish();
+		publish();
+	}
+
+	/**
+	 * Adds the words of one location to the shared index, or in reduce mode keeps them as a frozen
+	 * local index for {@link #publish()}.
+	 *
+	 * @param stems    the stemmed words
+	 * @param location the location they were found in
+	 */
+	private void add(List<String> stems, String location) {
+		if (!reduce) {
+			index.addAll(stems, location, 1);
+			return;
+		}
+		InvertedIndex local = new InvertedIndex();
+		local.addAll(stems, location, 1);
+		FrozenIndex frozen = local.freeze();
+		synchronized (locals) {
+			locals.add(frozen);
+		}
+	}
+
+	/**
+	 * In reduce mode, merges the local indexes pairwise in rounds on the work queue, so each round
+	 * touches every posting once and only about log2(n) rounds are needed, then adds the result to the
+	 * shared index in one step. Must be called after the queue has finished the tasks.
+	 */
+	private void publish() {
+		List<FrozenIndex> round;
+		synchronized (locals) {
+			if (locals.isEmpty()) {
+				return;
+			}
+			round = new ArrayList<>(locals);
+			locals.clear();
+		}
+
+		while (round.size() > 1) {
+			FrozenIndex[] merged = new FrozenIndex[(round.size() + 1) / 2];
+			for (int i = 0; i + 1 < round.size(); i += 2) {
+				queue.execute(new MergeTask(round.get(i), round.get(i + 1), merged, i / 2));
+			}
+			if (round.size() % 2 == 1) {
+				merged[merged.length - 1] = round.get(round.size() - 1);
+			}
+			queue.finish();
+			round = List.of(merged);
+		}
 
+		index.addAll(round.get(0));
 	}
 
 	public Collection<InvertedIndex.QueryResult> search(Collection<String> queries, boolean exact) {
 		return this.index.chooseSearch(queries, exact);
 	}
 
+	/**
+	 * Searches the index and keeps only the best results.
+	 *
+	 * @param queries the queries to search for
+	 * @param exact   whether to do an exact search
+	 * @param k       the most results to return
+	 * @return the best {@code k} results, sorted
+	 */
+	public List<InvertedIndex.QueryResult> search(Collection<String> queries, boolean exact, int k) {
+		return this.index.search(queries, exact, k);
+	}
+
 	/**
 	 * @param index index
 	 * @param url   url
@@ -67,19 +153,24 @@ public class MultiThreadedIndexBuilder extends InvertedIndexBuilder {
 	 */
 	public static void urlHelper(InvertedIndex index, URL url, String line) {
 		Integer counter = 1;
-		Stemmer snowball = new SnowballStemmer(DEFAULT);
-		for (String word : TextParser.parse(line)) {
-			word = snowball.stem(word).toString();
+		StemCache stems = StemCache.shared();
+		TextTokenizer tokens = new TextTokenizer().reset(line);
+		for (String word = tokens.next(); word != null; word = tokens.next()) {
+			word = stems.stem(word);
 			index.add(word, url.toString(), counter);
 			counter++;
 		}
 	}
 
 	/**
-	 * @param url
+	 * Crawls from the url and adds the pages to the index, then flushes the index so searches stop
+	 * taking the lock.
+	 *
+	 * @param url the url to start crawling from
 	 */
 	public void addUrl(URL url) {
 		parseUrls(url, 50);
+		index.flush();
 	}
 
 	/**
@@ -109,6 +200,7 @@ public class MultiThreadedIndexBuilder extends InvertedIndexBuilder {
 			}
 		}
 		queue.finish();
+		publish();
 	}
 
 	@Override
@@ -142,9 +234,11 @@ public class MultiThreadedIndexBuilder extends InvertedIndexBuilder {
 		public void run() {
 			try {
 
-				InvertedIndex local = new InvertedIndex();
-				InvertedIndexBuilder.parseTextFile(path, local);
-				index.addAll(local);
+				// stem outside the lock, then add the whole file at once
+				ArrayList<String> stems = TextFileStemmer.listStems(path);
+				if (stems != null) {
+					add(stems, path.toString());
+				}
 
 			} catch (IOException e) {
 				log.error("Could not add the following file " + path.toString());
@@ -186,11 +280,57 @@ public class MultiThreadedIndexBuilder extends InvertedIndexBuilder {
 		@Override
 		public void run() {
 
-			InvertedIndex local = new InvertedIndex();
 			String line = HtmlCleaner.stripHtml(html);
-			MultiThreadedIndexBuilder.urlHelper(local, url, line);
-			index.addAll(local);
+			add(TextFileStemmer.listStems(line), url.toString());
+
+		}
 
+	}
+
+	/**
+	 * Task class which merges two frozen indexes for one round of the reduction
+	 *
+	 * @author Sophia
+	 *
+	 */
+	private static class MergeTask implements Runnable {
+
+		/**
+		 * the first index to merge
+		 */
+		private final FrozenIndex left;
+
+		/**
+		 * the second index to merge
+		 */
+		private final FrozenIndex right;
+
+		/**
+		 * the results of this round
+		 */
+		private final FrozenIndex[] results;
+
+		/**
+		 * where to store the result
+		 */
+		private final int slot;
+
+		/**
+		 * @param left    the first index to merge
+		 * @param right   the second index to merge
+		 * @param results the results of this round
+		 * @param slot    where to store the result
+		 */
+		public MergeTask(FrozenIndex left, FrozenIndex right, FrozenIndex[] results, int slot) {
+			this.left = left;
+			this.right = right;
+			this.results = results;
+			this.slot = slot;
+		}
+
+		@Override
+		public void run() {
+			results[slot] = FrozenIndex.merge(List.of(left, right));
 		}
 
 	}
@@ -1,8 +1,12 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 /**
  *
@@ -13,6 +17,11 @@ import java.util.TreeSet;
  */
 public class MultiThreadedQueryBuilder implements QueryBuilderInterface {
 
+	/**
+	 * logger to log errors and debug
+	 */
+	private final static Logger log = LogManager.getLogger(MultiThreadedQueryBuilder.class);
+
 	/**
 	 * workQueue for multithreading
 	 */
@@ -29,6 +38,21 @@ public class MultiThreadedQueryBuilder implements QueryBuilderInterface {
 	 */
 	private final ThreadSafeInvertedIndex index;
 
+	/**
+	 * the cache searches go through, which may be shared with other searchers of the same index
+	 */
+	private final QueryCache cache;
+
+	/**
+	 * writes results to disk as each query finishes, or {@code null} to keep them in memory
+	 */
+	private final StreamingResultWriter stream;
+
+	/**
+	 * the queries already searched when results are streamed, since streamed results are not kept
+	 */
+	private final Set<String> streamed;
+
 	/**
 	 * Constructor for multiThreaded query builder
 	 *
@@ -36,10 +60,37 @@ public class MultiThreadedQueryBuilder implements QueryBuilderInterface {
 	 * @param queue queue for multithreading
 	 */
 	public MultiThreadedQueryBuilder(ThreadSafeInvertedIndex index, WorkQueue queue) {
+		this(index, queue, new QueryCache(index, 0));
+	}
+
+	/**
+	 * Constructor for multiThreaded query builder with a cache
+	 *
+	 * @param index takes in an invertedIndex
+	 * @param queue queue for multithreading
+	 * @param cache the cache of results from that index
+	 */
+	public MultiThreadedQueryBuilder(ThreadSafeInvertedIndex index, WorkQueue queue, QueryCache cache) {
+		this(index, queue, cache, null);
+	}
+
+	/**
+	 * Constructor for multiThreaded query builder that streams its results
+	 *
+	 * @param index  takes in an invertedIndex
+	 * @param queue  queue for multithreading
+	 * @param cache  the cache of results from that index
+	 * @param stream writes results to disk as each query finishes, or {@code null} to keep them in
+	 *               memory
+	 */
+	public MultiThreadedQueryBuilder(ThreadSafeInvertedIndex index, WorkQueue queue, QueryCache cache,
+			StreamingResultWriter stream) {
 		this.results = new TreeMap<>();
 		this.index = index;
 		this.queue = queue;
-
+		this.cache = cache;
+		this.stream = stream;
+		this.streamed = ConcurrentHashMap.newKeySet();
 	}
 
 	@Override
@@ -53,6 +104,24 @@ public class MultiThreadedQueryBuilder implements QueryBuilderInterface {
 		queue.execute(new Task(line, hasExactFlag));
 	}
 
+	/**
+	 * Resolves the stems of the batch in parallel, then scores its queries in parallel once every stem
+	 * is done.
+	 */
+	@Override
+	public void parseBatch(Path queryPath, boolean hasExactFlag) throws IOException {
+		QueryBatch batch = new QueryBatch(cache, hasExactFlag);
+		QueryBuilderInterface.readBatch(queryPath, batch);
+		for (String stem : batch.stems()) {
+			queue.execute(() -> batch.resolve(stem));
+		}
+		queue.finish();
+		for (Query query : batch.queries()) {
+			queue.execute(() -> store(query, batch.search(query)));
+		}
+		queue.finish();
+	}
+
 	/**
 	 * @author Sophia task that is required by the workQueue to perform
 	 */
@@ -77,26 +146,68 @@ public class MultiThreadedQueryBuilder implements QueryBuilderInterface {
 
 		@Override
 		public void run() {
-			TreeSet<String> queryLines = TextFileStemmer.uniqueStems(line);
-			String query = String.join(" ", queryLines);
+			Query query = Query.parse(line);
+			if (query == null) {
+				return;
+			}
 
-			synchronized (results) {
-				if (query.isBlank() || results.containsKey(query)) {
+			if (stream != null) {
+				if (!streamed.add(query.toString())) {
 					return;
 				}
+			} else {
+				synchronized (results) {
+					if (results.containsKey(query.toString())) {
+						return;
+					}
+				}
 			}
-			var chooseSearch = index.chooseSearch(queryLines, hasExactFlag);
-			synchronized (results) {
-				results.put(query, chooseSearch);
-			}
+			store(query, search(query, hasExactFlag));
+		}
 
+	}
+
+	/**
+	 * Searches for a query, only finding the best results when no more than that are streamed.
+	 *
+	 * @param query        the query
+	 * @param hasExactFlag whether to do an exact search
+	 * @return the sorted results
+	 */
+	private Collection<InvertedIndex.QueryResult> search(Query query, boolean hasExactFlag) {
+		if (stream != null && stream.limit() < Integer.MAX_VALUE) {
+			return query.search(index, hasExactFlag, stream.limit());
 		}
+		return cache.search(query, hasExactFlag);
+	}
 
+	/**
+	 * Keeps the results of a query until they are written, unless the query already has results.
+	 *
+	 * @param query the query
+	 * @param found the sorted results
+	 */
+	private void store(Query query, Collection<InvertedIndex.QueryResult> found) {
+		if (stream != null) {
+			try {
+				stream.write(query.toString(), found);
+			} catch (IOException e) {
+				log.error("Unable to stream the results of " + query);
+			}
+			return;
+		}
+		synchronized (results) {
+			results.putIfAbsent(query.toString(), found);
+		}
 	}
 
 	@Override
 	public void toJson(Path resultsPath) throws IOException {
-		SimpleJsonWriter.queryWriteOut(results, resultsPath);
+		if (stream != null) {
+			stream.finish(resultsPath);
+		} else {
+			SimpleJsonWriter.queryWriteOut(results, resultsPath);
+		}
 	}
 
 }
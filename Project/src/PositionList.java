@@ -0,0 +1,342 @@
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Stores the positions of one word within one location as a sorted set of integers. The positions
+ * are delta-encoded and written as variable-byte integers, so a typical position takes a single
+ * byte instead of a boxed {@link Integer} inside a tree node. A list holding only one position does
+ * not allocate a byte array at all.
+ *
+ * Warning: This class is not thread-safe.
+ *
+ * @author Sophia
+ *
+ */
+public class PositionList extends AbstractSet<Integer> {
+
+	/** Rough size of an object header plus the fields of this class, used for memory estimates. */
+	private static final int OBJECT_BYTES = 32;
+
+	/** Rough size of an array header, used for memory estimates. */
+	private static final int ARRAY_BYTES = 16;
+
+	/** The encoded deltas, or {@code null} while the list holds at most one position. */
+	private byte[] bytes;
+
+	/** The number of bytes in use. */
+	private int length;
+
+	/** The number of positions stored. */
+	private int size;
+
+	/** The largest (last) position stored. */
+	private int last;
+
+	/**
+	 * Initializes an empty position list.
+	 */
+	public PositionList() {
+		this.bytes = null;
+		this.length = 0;
+		this.size = 0;
+		this.last = 0;
+	}
+
+	/**
+	 * Adds a position to the list if it is not already present.
+	 *
+	 * @param position the position to add
+	 * @return {@code true} if the position was added
+	 */
+	public boolean add(int position) {
+		if (size == 0) {
+			last = position;
+			size = 1;
+			return true;
+		}
+
+		if (position > last) {
+			if (bytes == null) {
+				bytes = new byte[8];
+				length = writeInt(last);
+			}
+			append(position - last);
+			last = position;
+			size++;
+			return true;
+		}
+
+		if (position == last) {
+			return false;
+		}
+
+		// out of order, which only happens when merging; decode, insert, and encode again
+		int[] positions = toIntArray();
+		int index = Arrays.binarySearch(positions, position);
+		if (index >= 0) {
+			return false;
+		}
+		index = -index - 1;
+		int[] inserted = new int[positions.length + 1];
+		System.arraycopy(positions, 0, inserted, 0, index);
+		inserted[index] = position;
+		System.arraycopy(positions, index, inserted, index + 1, positions.length - index);
+		encode(inserted, inserted.length);
+		return true;
+	}
+
+	@Override
+	public boolean add(Integer position) {
+		return add(position.intValue());
+	}
+
+	/**
+	 * Adds every position from the other list, skipping those already present.
+	 *
+	 * @param other the positions to add
+	 * @return the number of positions that were added
+	 */
+	public int addAll(PositionList other) {
+		if (other.size == 0) {
+			return 0;
+		}
+
+		int[] theirs = other.toIntArray();
+		if (size == 0 || theirs[0] > last) {
+			int before = size;
+			for (int position : theirs) {
+				add(position);
+			}
+			return size - before;
+		}
+
+		// linear merge of the two sorted lists
+		int[] ours = toIntArray();
+		int[] merged = new int[ours.length + theirs.length];
+		int i = 0, j = 0, k = 0;
+		while (i < ours.length && j < theirs.length) {
+			if (ours[i] < theirs[j]) {
+				merged[k++] = ours[i++];
+			} else if (ours[i] > theirs[j]) {
+				merged[k++] = theirs[j++];
+			} else {
+				merged[k++] = ours[i++];
+				j++;
+			}
+		}
+		while (i < ours.length) {
+			merged[k++] = ours[i++];
+		}
+		while (j < theirs.length) {
+			merged[k++] = theirs[j++];
+		}
+
+		int before = size;
+		encode(merged, k);
+		return size - before;
+	}
+
+	/**
+	 * Determines whether the position is in the list.
+	 *
+	 * @param position the position to look for
+	 * @return {@code true} if the position is in the list
+	 */
+	public boolean contains(int position) {
+		if (size == 0 || position > last) {
+			return false;
+		}
+		if (position == last) {
+			return true;
+		}
+
+		Decoder decoder = new Decoder();
+		while (decoder.hasNext()) {
+			int current = decoder.nextInt();
+			if (current >= position) {
+				return current == position;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Integer && contains(((Integer) o).intValue());
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the first (smallest) position.
+	 *
+	 * @return the first position
+	 * @throws NoSuchElementException if the list is empty
+	 */
+	public int first() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return bytes == null ? last : new Decoder().nextInt();
+	}
+
+	/**
+	 * Returns the last (largest) position.
+	 *
+	 * @return the last position
+	 * @throws NoSuchElementException if the list is empty
+	 */
+	public int last() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return last;
+	}
+
+	/**
+	 * Decodes the positions into a new sorted array.
+	 *
+	 * @return the positions as an array
+	 */
+	public int[] toIntArray() {
+		int[] positions = new int[size];
+		if (bytes == null) {
+			if (size == 1) {
+				positions[0] = last;
+			}
+			return positions;
+		}
+
+		Decoder decoder = new Decoder();
+		for (int i = 0; i < size; i++) {
+			positions[i] = decoder.nextInt();
+		}
+		return positions;
+	}
+
+	/**
+	 * Estimates the heap space used by this list, including the object itself.
+	 *
+	 * @return the estimated number of bytes
+	 */
+	public long sizeInBytes() {
+		return OBJECT_BYTES + (bytes == null ? 0 : ARRAY_BYTES + bytes.length);
+	}
+
+	/**
+	 * Releases any unused capacity in the encoded array.
+	 */
+	public void trimToSize() {
+		if (bytes != null && bytes.length > length) {
+			bytes = Arrays.copyOf(bytes, length);
+		}
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Decoder();
+	}
+
+	/**
+	 * Replaces the contents of this list with the first {@code count} sorted, unique positions.
+	 *
+	 * @param positions the positions to store
+	 * @param count     the number of positions to use
+	 */
+	private void encode(int[] positions, int count) {
+		bytes = null;
+		length = 0;
+		size = 0;
+		for (int i = 0; i < count; i++) {
+			add(positions[i]);
+		}
+	}
+
+	/**
+	 * Writes a value as a variable-byte integer at the end of the encoded array.
+	 *
+	 * @param value the value to append, treated as unsigned
+	 */
+	private void append(int value) {
+		if (length + 5 > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(length + 5, bytes.length + (bytes.length >> 1)));
+		}
+		length = writeInt(value);
+	}
+
+	/**
+	 * Writes a value as a variable-byte integer starting at the current length. The array must have
+	 * room for five more bytes.
+	 *
+	 * @param value the value to write, treated as unsigned
+	 * @return the new length
+	 */
+	private int writeInt(int value) {
+		int offset = length;
+		while ((value & ~0x7F) != 0) {
+			bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[offset++] = (byte) value;
+		return offset;
+	}
+
+	/**
+	 * Walks the encoded positions in order.
+	 */
+	private class Decoder implements Iterator<Integer> {
+
+		/** The offset of the next byte to read. */
+		private int offset = 0;
+
+		/** The number of positions returned so far. */
+		private int returned = 0;
+
+		/** The last position returned. */
+		private int current = 0;
+
+		@Override
+		public boolean hasNext() {
+			return returned < size;
+		}
+
+		@Override
+		public Integer next() {
+			return nextInt();
+		}
+
+		/**
+		 * Returns the next position without boxing it.
+		 *
+		 * @return the next position
+		 */
+		public int nextInt() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			returned++;
+			if (bytes == null) {
+				return last;
+			}
+
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[offset++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+
+			current = returned == 1 ? value : current + value;
+			return current;
+		}
+
+	}
+
+}
@@ -0,0 +1,172 @@
+import java.util.Arrays;
+
+/**
+ * Stores every location a single word was found in, as location ids from a
+ * {@link LocationDictionary}, together with the positions of the word in each location. The ids
+ * are kept sorted so a lookup is a binary search and adding a new location (which almost always has
+ * the largest id so far) is an append. Sorted ids also let a {@link BooleanQuery} gallop through
+ * them.
+ *
+ * Warning: This class is not thread-safe.
+ *
+ * @author Sophia
+ *
+ */
+public class PostingList implements BooleanQuery.Postings {
+
+	/** Rough size of an object header plus the fields of this class, used for memory estimates. */
+	private static final int OBJECT_BYTES = 24;
+
+	/** Rough size of an array header, used for memory estimates. */
+	private static final int ARRAY_BYTES = 16;
+
+	/** The sorted location ids. */
+	private int[] ids;
+
+	/** The positions for each location id, in the same order as {@link #ids}. */
+	private PositionList[] positions;
+
+	/** The number of locations stored. */
+	private int size;
+
+	/**
+	 * Initializes an empty posting list.
+	 */
+	public PostingList() {
+		this.ids = new int[1];
+		this.positions = new PositionList[1];
+		this.size = 0;
+	}
+
+	/**
+	 * Number of locations the word was found in
+	 *
+	 * @return the number of locations
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the location id stored at an index.
+	 *
+	 * @param index the index, between 0 and {@link #size()}
+	 * @return the location id
+	 */
+	public int id(int index) {
+		return ids[index];
+	}
+
+	/**
+	 * Returns the positions stored at an index.
+	 *
+	 * @param index the index, between 0 and {@link #size()}
+	 * @return the positions for that location
+	 */
+	public PositionList positions(int index) {
+		return positions[index];
+	}
+
+	/**
+	 * Returns the number of positions stored at an index.
+	 *
+	 * @param index the index, between 0 and {@link #size()}
+	 * @return how many times the word was found in that location
+	 */
+	public int frequency(int index) {
+		return positions[index].size();
+	}
+
+	/**
+	 * Returns the positions for a location id.
+	 *
+	 * @param id the location id
+	 * @return the positions, or {@code null} if the word was not found in that location
+	 */
+	public PositionList get(int id) {
+		int index = indexOf(id);
+		return index < 0 ? null : positions[index];
+	}
+
+	/**
+	 * Returns the positions for a location id, adding an empty list if there is none yet.
+	 *
+	 * @param id the location id
+	 * @return the positions for that location
+	 */
+	public PositionList getOrCreate(int id) {
+		int index = indexOf(id);
+		if (index >= 0) {
+			return positions[index];
+		}
+
+		PositionList created = new PositionList();
+		insert(-index - 1, id, created);
+		return created;
+	}
+
+	/**
+	 * Stores the positions for a location id that is not in the list yet.
+	 *
+	 * @param id   the location id
+	 * @param list the positions for that location
+	 */
+	public void put(int id, PositionList list) {
+		int index = indexOf(id);
+		if (index >= 0) {
+			positions[index] = list;
+		} else {
+			insert(-index - 1, id, list);
+		}
+	}
+
+	/**
+	 * Estimates the heap space used by this list and the positions it holds.
+	 *
+	 * @return the estimated number of bytes
+	 */
+	public long sizeInBytes() {
+		long total = OBJECT_BYTES + 2 * ARRAY_BYTES + 4L * ids.length + 4L * positions.length;
+		for (int i = 0; i < size; i++) {
+			total += positions[i].sizeInBytes();
+		}
+		return total;
+	}
+
+	/**
+	 * Finds the index of a location id.
+	 *
+	 * @param id the location id
+	 * @return the index, or {@code -(insertion point) - 1} if it is not present
+	 */
+	private int indexOf(int id) {
+		if (size == 0 || id > ids[size - 1]) {
+			return -size - 1;
+		}
+		if (id == ids[size - 1]) {
+			return size - 1;
+		}
+		return Arrays.binarySearch(ids, 0, size, id);
+	}
+
+	/**
+	 * Inserts a location id and its positions at an index, growing the arrays as needed.
+	 *
+	 * @param index the index to insert at
+	 * @param id    the location id
+	 * @param list  the positions for that location
+	 */
+	private void insert(int index, int id, PositionList list) {
+		if (size == ids.length) {
+			int capacity = size + (size >> 1) + 1;
+			ids = Arrays.copyOf(ids, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+		}
+		System.arraycopy(ids, index, ids, index + 1, size - index);
+		System.arraycopy(positions, index, positions, index + 1, size - index);
+		ids[index] = id;
+		positions[index] = list;
+		size++;
+	}
+
+}
@@ -0,0 +1,244 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Merged match counts for the short prefixes that are searched the most. A one or two letter prefix
+ * expands to thousands of words, so once it has been searched a few times its postings are added up
+ * into one table indexed by location id, and a partial search for it reads the table instead of
+ * every posting list. Tables only pay off for prefixes whose postings outnumber the locations, and
+ * the tables together are kept within a memory budget by dropping the least searched ones.
+ *
+ * A mutable index keeps its tables up to date with {@link #add(String, int, int)} as words are
+ * added. Looking a table up never takes a lock, so searches of a frozen index stay lock free; only
+ * keeping, growing and dropping tables is synchronized. The contents of a table must only be changed
+ * while no search can be reading it.
+ *
+ * @author Sophia
+ *
+ */
+class PrefixTables {
+
+	/** The longest prefix that gets a table. */
+	static final int MAX_LENGTH = 2;
+
+	/** The number of bytes kept in tables when no budget is given. */
+	static final long DEFAULT_BUDGET = 16L << 20;
+
+	/** The number of times a prefix has to be searched before it gets a table. */
+	private static final int HOT_SEARCHES = 2;
+
+	/** The most bytes to keep in tables. */
+	private long budget;
+
+	/** The number of bytes in tables. */
+	private long bytes;
+
+	/** The match counts of each prefix with a table, indexed by location id. */
+	private final ConcurrentHashMap<String, int[]> tables;
+
+	/** The number of times each short prefix has been searched. */
+	private final ConcurrentHashMap<String, LongAdder> searches;
+
+	/**
+	 * Initializes empty tables.
+	 *
+	 * @param budget the most bytes to keep in tables
+	 */
+	PrefixTables(long budget) {
+		this.budget = Math.max(0, budget);
+		this.bytes = 0;
+		this.tables = new ConcurrentHashMap<>();
+		this.searches = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Counts a search for a prefix and returns its table.
+	 *
+	 * @param prefix the prefix being searched
+	 * @return the match counts by location id, which must not be modified, or {@code null} if the
+	 *         prefix has no table
+	 */
+	int[] lookup(String prefix) {
+		if (prefix.isEmpty() || prefix.length() > MAX_LENGTH) {
+			return null;
+		}
+		LongAdder count = searches.get(prefix);
+		if (count == null) {
+			count = searches.computeIfAbsent(prefix, key -> new LongAdder());
+		}
+		count.increment();
+		return tables.get(prefix);
+	}
+
+	/**
+	 * Checks whether a prefix without a table has been searched enough to be given one.
+	 *
+	 * @param prefix the prefix
+	 * @return {@code true} if a table built for it would be kept if there is room
+	 */
+	boolean wanted(String prefix) {
+		return prefix.length() <= MAX_LENGTH && !tables.containsKey(prefix) && searches(prefix) >= HOT_SEARCHES;
+	}
+
+	/**
+	 * Returns how many times a prefix has been searched.
+	 *
+	 * @param prefix the prefix
+	 * @return the number of searches
+	 */
+	private long searches(String prefix) {
+		LongAdder count = searches.get(prefix);
+		return count == null ? 0 : count.sum();
+	}
+
+	/**
+	 * Keeps a table built by a search if reading it is cheaper than reading the postings, making room
+	 * by dropping tables that have been searched less.
+	 *
+	 * @param prefix   the prefix
+	 * @param table    the match counts by location id, which must not be modified afterwards except by
+	 *                 {@link #add(String, int, int)}
+	 * @param postings the number of postings the table was added up from
+	 * @return {@code true} if the table was kept
+	 */
+	synchronized boolean offer(String prefix, int[] table, long postings) {
+		long size = 4L * table.length;
+		if (!wanted(prefix) || postings < table.length || size > budget) {
+			return false;
+		}
+		long heat = searches(prefix);
+		while (bytes + size > budget) {
+			String coldest = coldest();
+			if (coldest == null || searches(coldest) >= heat) {
+				return false;
+			}
+			drop(coldest);
+		}
+		tables.put(prefix, table);
+		bytes += size;
+		return true;
+	}
+
+	/**
+	 * Adds matches of a word to the tables of its prefixes.
+	 *
+	 * @param word  the word
+	 * @param id    the location id
+	 * @param found the number of new positions of the word in that location
+	 */
+	void add(String word, int id, int found) {
+		if (tables.isEmpty() || found == 0) {
+			return;
+		}
+		synchronized (this) {
+			grow(word, id, found);
+		}
+	}
+
+	/**
+	 * Adds matches of a word to the tables of its prefixes. The caller must hold the lock.
+	 *
+	 * @param word  the word
+	 * @param id    the location id
+	 * @param found the number of new positions of the word in that location
+	 */
+	private void grow(String word, int id, int found) {
+		for (int length = 1; length <= Math.min(MAX_LENGTH, word.length()); length++) {
+			String prefix = word.substring(0, length);
+			int[] table = tables.get(prefix);
+			if (table == null) {
+				continue;
+			}
+			if (id >= table.length) {
+				int[] grown = Arrays.copyOf(table, Math.max(id + 1, table.length * 2));
+				bytes += 4L * (grown.length - table.length);
+				tables.put(prefix, grown);
+				table = grown;
+			}
+			table[id] += found;
+		}
+		while (bytes > budget && !tables.isEmpty()) {
+			drop(coldest());
+		}
+	}
+
+	/**
+	 * Drops every table, keeping the search counts so hot prefixes get their tables back quickly.
+	 */
+	synchronized void clear() {
+		tables.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Changes the budget, dropping the least searched tables until they fit.
+	 *
+	 * @param budget the most bytes to keep in tables
+	 */
+	synchronized void budget(long budget) {
+		this.budget = Math.max(0, budget);
+		while (bytes > this.budget && !tables.isEmpty()) {
+			drop(coldest());
+		}
+	}
+
+	/**
+	 * Returns the budget.
+	 *
+	 * @return the most bytes to keep in tables
+	 */
+	synchronized long budget() {
+		return budget;
+	}
+
+	/**
+	 * Number of tables
+	 *
+	 * @return the number of prefixes with a table
+	 */
+	int size() {
+		return tables.size();
+	}
+
+	/**
+	 * Returns the memory used by the tables.
+	 *
+	 * @return the number of bytes in tables
+	 */
+	synchronized long bytes() {
+		return bytes;
+	}
+
+	/**
+	 * Finds the table that has been searched the least.
+	 *
+	 * @return its prefix, or {@code null} if there are no tables
+	 */
+	private String coldest() {
+		String coldest = null;
+		long fewest = Long.MAX_VALUE;
+		for (Map.Entry<String, int[]> entry : tables.entrySet()) {
+			long heat = searches(entry.getKey());
+			if (heat < fewest) {
+				fewest = heat;
+				coldest = entry.getKey();
+			}
+		}
+		return coldest;
+	}
+
+	/**
+	 * Drops the table of a prefix.
+	 *
+	 * @param prefix the prefix
+	 */
+	private void drop(String prefix) {
+		int[] table = tables.remove(prefix);
+		if (table != null) {
+			bytes -= 4L * table.length;
+		}
+	}
+
+}
@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * One cleaned and stemmed line of a query file or of the search form. A line is either a quoted
+ * phrase, a fuzzy list of words starting with {@code ~}, a list of wildcard patterns such as
+ * {@code *tion}, a {@link BooleanQuery}, or a plain list of words. Lines that only differ in the
+ * order, repeats or grouping of their words turn into the same {@link #toString()}, which results
+ * are stored and cached under, and a Boolean query that only joins words with {@code OR} is the
+ * same as the plain query for those words.
+ *
+ * @author Sophia
+ *
+ */
+public class Query {
+
+	/** The kinds of query a line can be. */
+	private enum Kind {
+		/** Words that each match on their own. */
+		PLAIN,
+		/** Words that must appear one right after another. */
+		PHRASE,
+		/** Words that also match words a few edits away. */
+		FUZZY,
+		/** Patterns where {@code *} matches any number of letters. */
+		WILDCARD,
+		/** A {@link BooleanQuery}. */
+		BOOLEAN
+	}
+
+	/** The normalized query. */
+	private final String key;
+
+	/**
+	 * The stems of a plain or fuzzy query, which are unique and sorted, of a phrase, which are in
+	 * order, or the patterns of a wildcard query
+	 */
+	private final List<String> stems;
+
+	/** The kind of query. */
+	private final Kind kind;
+
+	/** The parsed Boolean query, or {@code null} if the line is not one. */
+	private final BooleanQuery booleanQuery;
+
+	/**
+	 * Initializes a query.
+	 *
+	 * @param key          the normalized query
+	 * @param stems        the stems or patterns
+	 * @param kind         the kind of query
+	 * @param booleanQuery the parsed Boolean query, or {@code null}
+	 */
+	private Query(String key, List<String> stems, Kind kind, BooleanQuery booleanQuery) {
+		this.key = key;
+		this.stems = stems;
+		this.kind = kind;
+		this.booleanQuery = booleanQuery;
+	}
+
+	/**
+	 * Parses a line.
+	 *
+	 * @param line the query line
+	 * @return the query, or {@code null} if the line has no words
+	 */
+	public static Query parse(String line) {
+		if (QueryBuilderInterface.isPhrase(line)) {
+			List<String> phrase = TextFileStemmer.listStems(line);
+			return phrase.isEmpty() ? null
+					: new Query(QueryBuilderInterface.phraseKey(phrase), phrase, Kind.PHRASE, null);
+		}
+
+		if (QueryBuilderInterface.isFuzzy(line)) {
+			Query plain = parse(line.strip().substring(1));
+			return plain == null ? null : plain.fuzzy();
+		}
+
+		if (QueryBuilderInterface.isWildcard(line)) {
+			List<String> patterns = QueryBuilderInterface.patterns(line);
+			return patterns.isEmpty() ? null : new Query(String.join(" ", patterns), patterns, Kind.WILDCARD, null);
+		}
+
+		if (BooleanQuery.isBoolean(line)) {
+			BooleanQuery parsed = BooleanQuery.parse(line);
+			if (parsed == null) {
+				return null;
+			}
+			if (!parsed.isPlain()) {
+				return new Query(parsed.toString(), List.of(), Kind.BOOLEAN, parsed);
+			}
+			// the operators are not plain words, so the stems come from the parsed query
+			List<String> stems = new ArrayList<>(parsed.terms());
+			return new Query(String.join(" ", stems), stems, Kind.PLAIN, null);
+		}
+
+		List<String> stems = new ArrayList<>(TextFileStemmer.uniqueStems(line));
+		String key = String.join(" ", stems);
+		return key.isBlank() ? null : new Query(key, stems, Kind.PLAIN, null);
+	}
+
+	/**
+	 * Returns the fuzzy version of a plain query, for when the query itself finds nothing.
+	 *
+	 * @return the fuzzy query, or {@code null} if this is not a plain query
+	 */
+	public Query fuzzy() {
+		return kind != Kind.PLAIN ? null : new Query("~" + key, stems, Kind.FUZZY, null);
+	}
+
+	/**
+	 * Creates the plain query for a single stem, which is not stemmed again.
+	 *
+	 * @param stem the stem
+	 * @return the query
+	 */
+	static Query stem(String stem) {
+		return new Query(stem, List.of(stem), Kind.PLAIN, null);
+	}
+
+	/**
+	 * Returns the stems of a plain query.
+	 *
+	 * @return the unique and sorted stems, or {@code null} if this is not a plain query
+	 */
+	List<String> stems() {
+		return kind == Kind.PLAIN ? stems : null;
+	}
+
+	/**
+	 * Searches an index for the query.
+	 *
+	 * @param index        the index to search
+	 * @param hasExactFlag whether plain and Boolean words must match exactly
+	 * @return the sorted results
+	 */
+	public Collection<InvertedIndex.QueryResult> search(InvertedIndex index, boolean hasExactFlag) {
+		switch (kind) {
+			case PHRASE:
+				return index.phraseSearch(stems);
+			case FUZZY:
+				return index.fuzzySearch(stems);
+			case WILDCARD:
+				return index.wildcardSearch(stems);
+			case BOOLEAN:
+				return index.booleanSearch(booleanQuery, hasExactFlag);
+			default:
+				return index.chooseSearch(stems, hasExactFlag);
+		}
+	}
+
+	/**
+	 * Searches an index for the query, letting a heavy plain query use every core with
+	 * {@link InvertedIndex#parallelSearch(Collection, boolean, int)}. Other kinds of query are searched
+	 * the same way as {@link #search(InvertedIndex, boolean)}.
+	 *
+	 * @param index        the index to search
+	 * @param hasExactFlag whether plain and Boolean words must match exactly
+	 * @return the sorted results
+	 */
+	public Collection<InvertedIndex.QueryResult> parallelSearch(InvertedIndex index, boolean hasExactFlag) {
+		if (stems() == null) {
+			return search(index, hasExactFlag);
+		}
+		return index.parallelSearch(stems, hasExactFlag, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Searches an index for the query and keeps only the best results.
+	 *
+	 * @param index        the index to search
+	 * @param hasExactFlag whether plain and Boolean words must match exactly
+	 * @param k            the most results to return
+	 * @return the best {@code k} results, sorted
+	 */
+	public List<InvertedIndex.QueryResult> search(InvertedIndex index, boolean hasExactFlag, int k) {
+		if (stems() == null) {
+			return InvertedIndex.top(new ArrayList<>(search(index, hasExactFlag)), k);
+		}
+		return index.search(stems, hasExactFlag, k);
+	}
+
+	/**
+	 * Returns the normalized query.
+	 */
+	@Override
+	public String toString() {
+		return key;
+	}
+
+}
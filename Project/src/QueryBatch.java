@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A whole file of queries searched together. Every unique stem in the plain queries is looked up
+ * once, including the expansion of a prefix for a partial search, and each plain query is then
+ * scored by adding up the results of its stems instead of walking the same postings again. Phrases
+ * and Boolean queries are searched one at a time as usual.
+ *
+ * Stems are resolved through the {@link QueryCache}, so the results of a single stem are shared with
+ * anything else searching the same index.
+ *
+ * @author Sophia
+ *
+ */
+public class QueryBatch {
+
+	/** The cache searches go through. */
+	private final QueryCache cache;
+
+	/** Whether to do an exact search. */
+	private final boolean hasExactFlag;
+
+	/** The unique queries of the batch by their normalized query. */
+	private final TreeMap<String, Query> queries;
+
+	/** The results of each stem of the plain queries, or {@code null} until it is resolved. */
+	private final TreeMap<String, Collection<InvertedIndex.QueryResult>> stems;
+
+	/**
+	 * Initializes an empty batch.
+	 *
+	 * @param cache        the cache searches go through
+	 * @param hasExactFlag whether to do an exact search
+	 */
+	public QueryBatch(QueryCache cache, boolean hasExactFlag) {
+		this.cache = cache;
+		this.hasExactFlag = hasExactFlag;
+		this.queries = new TreeMap<>();
+		this.stems = new TreeMap<>();
+	}
+
+	/**
+	 * Parses a query line and adds it to the batch, unless the same query is already in it.
+	 *
+	 * @param line the query line
+	 */
+	public void add(String line) {
+		Query query = Query.parse(line);
+		if (query == null || queries.putIfAbsent(query.toString(), query) != null) {
+			return;
+		}
+		List<String> words = query.stems();
+		if (words != null) {
+			for (String stem : words) {
+				stems.putIfAbsent(stem, null);
+			}
+		}
+	}
+
+	/**
+	 * Returns the unique stems of the plain queries, which must each be resolved before the queries
+	 * are searched.
+	 *
+	 * @return the stems
+	 */
+	public Set<String> stems() {
+		return Collections.unmodifiableSet(new TreeSet<>(stems.keySet()));
+	}
+
+	/**
+	 * Returns the unique queries of the batch.
+	 *
+	 * @return the queries
+	 */
+	public Collection<Query> queries() {
+		return Collections.unmodifiableCollection(queries.values());
+	}
+
+	/**
+	 * Searches for one stem and keeps the results for every query it is part of. This is safe to call
+	 * from several threads at once.
+	 *
+	 * @param stem the stem
+	 */
+	public void resolve(String stem) {
+		Collection<InvertedIndex.QueryResult> results = cache.search(Query.stem(stem), hasExactFlag);
+		synchronized (stems) {
+			stems.put(stem, results);
+		}
+	}
+
+	/**
+	 * Searches for a query of the batch. A plain query is scored from the results of its stems, which
+	 * must be resolved already. This is safe to call from several threads at once.
+	 *
+	 * @param query the query
+	 * @return the sorted results, in the same order as {@link Query#search(InvertedIndex, boolean)}
+	 */
+	public Collection<InvertedIndex.QueryResult> search(Query query) {
+		List<String> words = query.stems();
+		if (words == null) {
+			return cache.search(query, hasExactFlag);
+		}
+
+		List<Collection<InvertedIndex.QueryResult>> found = new ArrayList<>(words.size());
+		synchronized (stems) {
+			for (String stem : words) {
+				Collection<InvertedIndex.QueryResult> results = stems.get(stem);
+				if (results == null) {
+					throw new IllegalStateException("The stem " + stem + " was not resolved");
+				}
+				found.add(results);
+			}
+		}
+		if (found.size() == 1) {
+			return found.get(0);
+		}
+
+		// the matches and word count of each location
+		HashMap<String, int[]> totals = new HashMap<>();
+		for (Collection<InvertedIndex.QueryResult> results : found) {
+			for (InvertedIndex.QueryResult result : results) {
+				int[] total = totals.computeIfAbsent(result.getLocation(),
+						location -> new int[] { 0, result.getWordCount() });
+				total[0] += result.getMatchCount();
+			}
+		}
+
+		ArrayList<InvertedIndex.QueryResult> results = new ArrayList<>(totals.size());
+		for (Map.Entry<String, int[]> entry : totals.entrySet()) {
+			int[] total = entry.getValue();
+			double score = (double) total[0] / total[1];
+			results.add(new InvertedIndex.QueryResult(entry.getKey(), total[0], total[1], score));
+		}
+		Collections.sort(results);
+		return results;
+	}
+
+}
@@ -1,8 +1,8 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 /**
  * Class responsible for storing and parsing the queries.
@@ -24,6 +24,21 @@ public class QueryBuilder implements QueryBuilderInterface {
 	 */
 	private final InvertedIndex index;
 
+	/**
+	 * the cache searches go through, which may be shared with other searchers of the same index
+	 */
+	private final QueryCache cache;
+
+	/**
+	 * writes results to disk as each query finishes, or {@code null} to keep them in memory
+	 */
+	private final StreamingResultWriter stream;
+
+	/**
+	 * the queries already searched when results are streamed, since streamed results are not kept
+	 */
+	private final HashSet<String> streamed;
+
 	/**
 	 * intializes queryBuilder
 	 *
@@ -31,8 +46,33 @@ public class QueryBuilder implements QueryBuilderInterface {
 	 *
 	 */
 	public QueryBuilder(InvertedIndex index) {
+		this(index, new QueryCache(index, 0));
+	}
+
+	/**
+	 * intializes queryBuilder with a cache
+	 *
+	 * @param index inverted index
+	 * @param cache the cache of results from that index
+	 */
+	public QueryBuilder(InvertedIndex index, QueryCache cache) {
+		this(index, cache, null);
+	}
+
+	/**
+	 * intializes queryBuilder that streams its results
+	 *
+	 * @param index  inverted index
+	 * @param cache  the cache of results from that index
+	 * @param stream writes results to disk as each query finishes, or {@code null} to keep them in
+	 *               memory
+	 */
+	public QueryBuilder(InvertedIndex index, QueryCache cache, StreamingResultWriter stream) {
 		this.results = new TreeMap<>();
 		this.index = index;
+		this.cache = cache;
+		this.stream = stream;
+		this.streamed = new HashSet<>();
 	}
 
 	/**
@@ -56,10 +96,54 @@ public class QueryBuilder implements QueryBuilderInterface {
 	 */
 	@Override
 	public void parseQueries(String line, boolean hasExactFlag) throws IOException {
-		TreeSet<String> queryLines = TextFileStemmer.uniqueStems(line);
-		String query = String.join(" ", queryLines);
-		if (!query.isBlank() && !results.containsKey(query)) {
-			results.put(query, index.chooseSearch(queryLines, hasExactFlag));
+		Query query = Query.parse(line);
+		if (query == null) {
+			return;
+		}
+		if (stream != null ? !streamed.add(query.toString()) : results.containsKey(query.toString())) {
+			return;
+		}
+		store(query, search(query, hasExactFlag));
+	}
+
+	/**
+	 * Searches for a query, only finding the best results when no more than that are streamed.
+	 *
+	 * @param query        the query
+	 * @param hasExactFlag whether to do an exact search
+	 * @return the sorted results
+	 */
+	private Collection<InvertedIndex.QueryResult> search(Query query, boolean hasExactFlag) {
+		if (stream != null && stream.limit() < Integer.MAX_VALUE) {
+			return query.search(index, hasExactFlag, stream.limit());
+		}
+		return cache.search(query, hasExactFlag);
+	}
+
+	@Override
+	public void parseBatch(Path queryPath, boolean hasExactFlag) throws IOException {
+		QueryBatch batch = new QueryBatch(cache, hasExactFlag);
+		QueryBuilderInterface.readBatch(queryPath, batch);
+		for (String stem : batch.stems()) {
+			batch.resolve(stem);
+		}
+		for (Query query : batch.queries()) {
+			store(query, batch.search(query));
+		}
+	}
+
+	/**
+	 * Keeps the results of a query until they are written, unless the query already has results.
+	 *
+	 * @param query the query
+	 * @param found the sorted results
+	 * @throws IOException if the results could not be streamed
+	 */
+	private void store(Query query, Collection<InvertedIndex.QueryResult> found) throws IOException {
+		if (stream != null) {
+			stream.write(query.toString(), found);
+		} else {
+			results.putIfAbsent(query.toString(), found);
 		}
 	}
 
@@ -72,7 +156,11 @@ public class QueryBuilder implements QueryBuilderInterface {
 	 */
 	@Override
 	public void toJson(Path resultsPath) throws IOException {
-		SimpleJsonWriter.queryWriteOut(results, resultsPath);
+		if (stream != null) {
+			stream.finish(resultsPath);
+		} else {
+			SimpleJsonWriter.queryWriteOut(results, resultsPath);
+		}
 	}
 
 }
@@ -3,6 +3,9 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
 
 /**
  * QueryBuilderInterface
@@ -35,6 +38,120 @@ public interface QueryBuilderInterface {
 	 */
 	public void parseQueries(String line, boolean hasExactFlag) throws IOException;
 
+	/**
+	 * Parses a whole query file as a {@link QueryBatch}, so each stem is looked up once no matter how
+	 * many queries it is part of.
+	 *
+	 * @param queryPath    the path of the query
+	 * @param hasExactFlag takes in exact flag to see which search we are using
+	 * @throws IOException throws exception
+	 */
+	public void parseBatch(Path queryPath, boolean hasExactFlag) throws IOException;
+
+	/**
+	 * Reads every line of a query file into a batch.
+	 *
+	 * @param queryPath the path of the query
+	 * @param batch     the batch to add the lines to
+	 * @throws IOException throws exception
+	 */
+	public static void readBatch(Path queryPath, QueryBatch batch) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(queryPath, StandardCharsets.UTF_8)) {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				batch.add(line);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a query line is a phrase, which is written by wrapping the line in double quotes.
+	 *
+	 * @param line the query line
+	 * @return {@code true} if the whole line is quoted
+	 */
+	public static boolean isPhrase(String line) {
+		String trimmed = line.strip();
+		return trimmed.length() > 1 && trimmed.startsWith("\"") && trimmed.endsWith("\"");
+	}
+
+	/**
+	 * Checks whether a query line is fuzzy, which is written by starting the line with a tilde. The
+	 * words of a fuzzy query also match words a few edits away, so misspellings still find something.
+	 *
+	 * @param line the query line
+	 * @return {@code true} if the line starts with {@code ~}
+	 */
+	public static boolean isFuzzy(String line) {
+		return line.strip().startsWith("~");
+	}
+
+	/**
+	 * Checks whether a query line has wildcards, which are written as {@code *} inside or around a
+	 * word. A wildcard matches any number of letters, so {@code *tion} finds every word ending in
+	 * {@code tion}.
+	 *
+	 * @param line the query line
+	 * @return {@code true} if the line has a {@code *}
+	 */
+	public static boolean isWildcard(String line) {
+		return line.indexOf('*') >= 0;
+	}
+
+	/**
+	 * Returns the patterns of a wildcard query. The letters around each wildcard are cleaned but not
+	 * stemmed, since they are usually only part of a word, and words without a wildcard are stemmed
+	 * as usual. A pattern that is nothing but wildcards would match every word, so it is left out.
+	 *
+	 * @param line the query line
+	 * @return the unique and sorted patterns
+	 */
+	public static List<String> patterns(String line) {
+		TreeSet<String> patterns = new TreeSet<>();
+		for (String token : TextParser.split(line)) {
+			if (token.indexOf('*') < 0) {
+				patterns.addAll(TextFileStemmer.listStems(token));
+				continue;
+			}
+			StringBuilder pattern = new StringBuilder();
+			for (String segment : token.split("\\*", -1)) {
+				pattern.append(TextParser.clean(segment)).append('*');
+			}
+			// drop the wildcard added after the last segment; a run of wildcards matches no more than one
+			String cleaned = pattern.substring(0, pattern.length() - 1).replaceAll("\\*+", "*");
+			if (!cleaned.replace("*", "").isEmpty()) {
+				patterns.add(cleaned);
+			}
+		}
+		return new ArrayList<>(patterns);
+	}
+
+	/**
+	 * Turns every word of a query line into a wildcard pattern that finds it inside other words, so
+	 * {@code graph} becomes {@code *graph*}.
+	 *
+	 * @param line the query line
+	 * @return the wildcard query line
+	 */
+	public static String contains(String line) {
+		StringBuilder wrapped = new StringBuilder();
+		for (String token : TextParser.split(line)) {
+			wrapped.append(wrapped.length() == 0 ? "*" : " *").append(token).append('*');
+		}
+		return wrapped.toString();
+	}
+
+	/**
+	 * Returns the key phrase results are stored under. The quotes keep a phrase apart from the same
+	 * words searched without quotes.
+	 *
+	 * @param phrase the stemmed words of the phrase
+	 * @return the key
+	 */
+	public static String phraseKey(List<String> phrase) {
+		return '"' + String.join(" ", phrase) + '"';
+	}
+
 	/**
 	 * Calls method that writes in nice JSON format
 	 *
@@ -0,0 +1,381 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of search results shared by everything that searches the same index. Entries are
+ * keyed by the normalized query and the search mode, and the least recently used entry is evicted
+ * once the cache is full. Every entry is stamped with the {@link InvertedIndex#generation()} the
+ * search started at, and an entry from an older generation is dropped the next time it is looked
+ * up, so a write to the index never leaves stale results behind.
+ *
+ * Identical searches that miss at the same time are coalesced: the first one runs the search and the
+ * others wait for its results instead of running the same search again. This also happens when the
+ * cache is turned off.
+ *
+ * @author Sophia
+ *
+ */
+public class QueryCache {
+
+	/** The number of entries kept when no capacity is given. */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/** The index the cached results came from. */
+	private final InvertedIndex index;
+
+	/** The most entries to keep, or 0 to not cache at all. */
+	private final int capacity;
+
+	/** Whether a heavy search may use every core. */
+	private final boolean parallel;
+
+	/** The cached results in least recently used order. */
+	private final LinkedHashMap<String, Entry> entries;
+
+	/** The number of lookups that found fresh results. */
+	private long hits;
+
+	/** The number of lookups that had to search. */
+	private long misses;
+
+	/** The number of entries dropped to make room. */
+	private long evictions;
+
+	/** The number of entries dropped because the index changed. */
+	private long expirations;
+
+	/** The number of misses that waited for an identical search instead of running their own. */
+	private long coalesced;
+
+	/** The searches that are running, by cache key. */
+	private final HashMap<String, Flight> flights;
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param index    the index to search
+	 * @param capacity the most entries to keep, or 0 to not cache at all
+	 */
+	public QueryCache(InvertedIndex index, int capacity) {
+		this(index, capacity, false);
+	}
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param index    the index to search
+	 * @param capacity the most entries to keep, or 0 to not cache at all
+	 * @param parallel whether a heavy search may use every core, see
+	 *                 {@link Query#parallelSearch(InvertedIndex, boolean)}
+	 */
+	public QueryCache(InvertedIndex index, int capacity, boolean parallel) {
+		this.index = index;
+		this.capacity = Math.max(0, capacity);
+		this.parallel = parallel;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > QueryCache.this.capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+		this.expirations = 0;
+		this.coalesced = 0;
+		this.flights = new HashMap<>();
+	}
+
+	/**
+	 * Returns the results of a query, searching the index only if there are no fresh results cached
+	 * and no identical search is already running.
+	 *
+	 * @param query        the query
+	 * @param hasExactFlag whether to do an exact search
+	 * @return the sorted results, which must not be modified
+	 */
+	public Collection<InvertedIndex.QueryResult> search(Query query, boolean hasExactFlag) {
+		String key = key(query, hasExactFlag);
+		long generation = index.generation();
+		Flight flight;
+		boolean leader;
+		synchronized (entries) {
+			Collection<InvertedIndex.QueryResult> results = lookup(key, generation);
+			if (results != null) {
+				return results;
+			}
+
+			// a search that started before the last write could return stale results, so it is not joined
+			flight = flights.get(key);
+			leader = flight == null || flight.generation != generation;
+			if (leader) {
+				flight = new Flight(generation);
+				flights.put(key, flight);
+			} else {
+				coalesced++;
+			}
+		}
+
+		if (!leader) {
+			return flight.await();
+		}
+
+		// the generation was read before searching, so a write during the search expires this entry
+		Collection<InvertedIndex.QueryResult> results = null;
+		try {
+			results = Collections.unmodifiableCollection(
+					parallel ? query.parallelSearch(index, hasExactFlag) : query.search(index, hasExactFlag));
+		} finally {
+			synchronized (entries) {
+				if (flights.get(key) == flight) {
+					flights.remove(key);
+				}
+				// a slower search must not replace results another thread found at a newer generation
+				Entry newer = entries.get(key);
+				if (results != null && capacity > 0 && (newer == null || newer.generation <= generation)) {
+					entries.put(key, new Entry(generation, results));
+				}
+			}
+			flight.finish(results);
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the cached results of a query without searching, and without counting a miss.
+	 *
+	 * @param query        the query
+	 * @param hasExactFlag whether to do an exact search
+	 * @return the sorted results, or {@code null} if there are no fresh results cached
+	 */
+	public Collection<InvertedIndex.QueryResult> peek(Query query, boolean hasExactFlag) {
+		String key = key(query, hasExactFlag);
+		long generation = index.generation();
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry == null || entry.generation != generation) {
+				return null;
+			}
+			hits++;
+			return entry.results;
+		}
+	}
+
+	/**
+	 * Looks up fresh results and updates the counts. The caller must hold the lock on the entries.
+	 *
+	 * @param key        the cache key
+	 * @param generation the current generation of the index
+	 * @return the results, or {@code null} if the search has to run
+	 */
+	private Collection<InvertedIndex.QueryResult> lookup(String key, long generation) {
+		Entry entry = entries.get(key);
+		if (entry != null && entry.generation == generation) {
+			hits++;
+			return entry.results;
+		}
+		if (entry != null && entry.generation < generation) {
+			entries.remove(key);
+			expirations++;
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * Returns the cache key of a query.
+	 *
+	 * @param query        the query
+	 * @param hasExactFlag whether to do an exact search
+	 * @return the key
+	 */
+	private static String key(Query query, boolean hasExactFlag) {
+		return (hasExactFlag ? "exact:" : "partial:") + query;
+	}
+
+	/**
+	 * Number of cached entries
+	 *
+	 * @return the number of entries, including ones that have not been found to be stale yet
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Number of hits
+	 *
+	 * @return the number of lookups that found fresh results
+	 */
+	public long hits() {
+		synchronized (entries) {
+			return hits;
+		}
+	}
+
+	/**
+	 * Number of misses
+	 *
+	 * @return the number of lookups that had to search
+	 */
+	public long misses() {
+		synchronized (entries) {
+			return misses;
+		}
+	}
+
+	/**
+	 * Number of evictions
+	 *
+	 * @return the number of entries dropped to make room
+	 */
+	public long evictions() {
+		synchronized (entries) {
+			return evictions;
+		}
+	}
+
+	/**
+	 * Number of expirations
+	 *
+	 * @return the number of entries dropped because the index changed
+	 */
+	public long expirations() {
+		synchronized (entries) {
+			return expirations;
+		}
+	}
+
+	/**
+	 * Number of coalesced misses
+	 *
+	 * @return the number of misses that waited for an identical search instead of running their own
+	 */
+	public long coalesced() {
+		synchronized (entries) {
+			return coalesced;
+		}
+	}
+
+	/**
+	 * Returns the share of lookups that were hits.
+	 *
+	 * @return the hit rate between 0 and 1
+	 */
+	public double hitRate() {
+		synchronized (entries) {
+			long lookups = hits + misses;
+			return lookups == 0 ? 0 : (double) hits / lookups;
+		}
+	}
+
+	@Override
+	public String toString() {
+		synchronized (entries) {
+			return String.format(
+					"Cache entries: %d/%d, hits: %d, misses: %d (coalesced: %d), hit rate: %.2f%%, evictions: %d, "
+							+ "expirations: %d",
+					entries.size(), capacity, hits, misses, coalesced, 100 * hitRate(), evictions, expirations);
+		}
+	}
+
+	/**
+	 * Cached results and the generation they were found at.
+	 */
+	private static class Entry {
+
+		/** The generation of the index when the search started. */
+		private final long generation;
+
+		/** The sorted results. */
+		private final Collection<InvertedIndex.QueryResult> results;
+
+		/**
+		 * Initializes an entry.
+		 *
+		 * @param generation the generation of the index when the search started
+		 * @param results    the sorted results
+		 */
+		public Entry(long generation, Collection<InvertedIndex.QueryResult> results) {
+			this.generation = generation;
+			this.results = results;
+		}
+
+	}
+
+	/**
+	 * A search that is running, which identical searches can wait for.
+	 */
+	private static class Flight {
+
+		/** The generation of the index when the search started. */
+		private final long generation;
+
+		/** Whether the search has finished, successfully or not. */
+		private boolean done;
+
+		/** The results, or {@code null} if the search failed. */
+		private Collection<InvertedIndex.QueryResult> results;
+
+		/**
+		 * Initializes a flight.
+		 *
+		 * @param generation the generation of the index when the search started
+		 */
+		public Flight(long generation) {
+			this.generation = generation;
+			this.done = false;
+			this.results = null;
+		}
+
+		/**
+		 * Hands the results to every waiting thread.
+		 *
+		 * @param results the results, or {@code null} if the search failed
+		 */
+		public synchronized void finish(Collection<InvertedIndex.QueryResult> results) {
+			this.results = results;
+			this.done = true;
+			notifyAll();
+		}
+
+		/**
+		 * Waits for the search to finish.
+		 *
+		 * @return the results
+		 * @throws IllegalStateException if the search failed
+		 */
+		public synchronized Collection<InvertedIndex.QueryResult> await() {
+			boolean interrupted = false;
+			while (!done) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					// keep waiting, since giving up would leave the caller without results
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (results == null) {
+				throw new IllegalStateException("The search this search was waiting for failed");
+			}
+			return results;
+		}
+
+	}
+
+}
@@ -0,0 +1,241 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Reusable scratch space for scoring one search at a time. Match counts are added up in a primitive
+ * array indexed by location id, and the ids that were hit are remembered so the array can be
+ * cleared without touching the rest of it. Ranking is done on the ids as well, so a
+ * {@link InvertedIndex.QueryResult} is only created for each result that is returned.
+ *
+ * Every thread has its own accumulator, which grows to the largest index it has searched and is
+ * then reused, so a search does not allocate anything per match.
+ *
+ * Warning: An accumulator must be finished with {@link #results(int, IntFunction, IntUnaryOperator)}
+ * before the same thread starts another search.
+ *
+ * @author Sophia
+ *
+ */
+class ScoreAccumulator {
+
+	/** The accumulator of each thread. */
+	private static final ThreadLocal<ScoreAccumulator> POOL = ThreadLocal.withInitial(ScoreAccumulator::new);
+
+	/** The number of matches for each location id. */
+	private int[] matches;
+
+	/** The score of each hit location id, filled in when the results are ranked. */
+	private double[] scores;
+
+	/** The location ids that were hit, in the order they were first hit. */
+	private int[] hits;
+
+	/** The number of ids in {@link #hits}. */
+	private int size;
+
+	/**
+	 * Initializes an empty accumulator.
+	 */
+	private ScoreAccumulator() {
+		this.matches = new int[16];
+		this.scores = new double[16];
+		this.hits = new int[16];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns this thread's accumulator, ready for a new search.
+	 *
+	 * @param locations the number of location ids the search can hit
+	 * @return the accumulator
+	 */
+	static ScoreAccumulator get(int locations) {
+		ScoreAccumulator accumulator = POOL.get();
+		accumulator.clear();
+		if (locations > accumulator.matches.length) {
+			int length = Math.max(locations, accumulator.matches.length * 2);
+			accumulator.matches = new int[length];
+			accumulator.scores = new double[length];
+			accumulator.hits = new int[length];
+		}
+		return accumulator;
+	}
+
+	/**
+	 * Adds matches for a location.
+	 *
+	 * @param id    the location id
+	 * @param found how many times a query word was found in that location, which must be positive
+	 */
+	void add(int id, int found) {
+		if (matches[id] == 0) {
+			hits[size++] = id;
+		}
+		matches[id] += found;
+	}
+
+	/**
+	 * Adds the matches of every location in a table.
+	 *
+	 * @param table the matches by location id, which may end early
+	 */
+	void addAll(int[] table) {
+		for (int id = 0; id < table.length; id++) {
+			if (table[id] > 0) {
+				add(id, table[id]);
+			}
+		}
+	}
+
+	/**
+	 * Ranks the hit locations and creates results for the best ones, then clears the accumulator.
+	 *
+	 * @param k        the most results to return
+	 * @param location the location for each id
+	 * @param count    the total word count for each id
+	 * @return the best {@code k} results, in {@link InvertedIndex.QueryResult#compareTo} order
+	 */
+	List<InvertedIndex.QueryResult> results(int k, IntFunction<String> location, IntUnaryOperator count) {
+		try {
+			for (int i = 0; i < size; i++) {
+				int id = hits[i];
+				scores[id] = (double) matches[id] / count.applyAsInt(id);
+			}
+
+			if (k <= 0 || size == 0) {
+				return new ArrayList<>();
+			}
+
+			if (k >= size) {
+				ArrayList<InvertedIndex.QueryResult> results = new ArrayList<>(size);
+				for (int i = 0; i < size; i++) {
+					results.add(result(hits[i], location, count));
+				}
+				Collections.sort(results);
+				return results;
+			}
+
+			if (k == 1) {
+				int best = hits[0];
+				for (int i = 1; i < size; i++) {
+					if (compare(hits[i], best, location) < 0) {
+						best = hits[i];
+					}
+				}
+				ArrayList<InvertedIndex.QueryResult> results = new ArrayList<>(1);
+				results.add(result(best, location, count));
+				return results;
+			}
+
+			// keep the best k ids in the front of hits as a heap with the worst of them on top
+			for (int i = 1; i < k; i++) {
+				siftUp(i, location);
+			}
+			for (int i = k; i < size; i++) {
+				if (compare(hits[i], hits[0], location) < 0) {
+					// swap rather than overwrite, so every hit id is still there to be cleared
+					int worst = hits[0];
+					hits[0] = hits[i];
+					hits[i] = worst;
+					siftDown(0, k, location);
+				}
+			}
+
+			ArrayList<InvertedIndex.QueryResult> results = new ArrayList<>(k);
+			for (int i = 0; i < k; i++) {
+				results.add(result(hits[i], location, count));
+			}
+			Collections.sort(results);
+			return results;
+		} finally {
+			clear();
+		}
+	}
+
+	/**
+	 * Creates the result for a location id.
+	 *
+	 * @param id       the location id
+	 * @param location the location for each id
+	 * @param count    the total word count for each id
+	 * @return the result
+	 */
+	private InvertedIndex.QueryResult result(int id, IntFunction<String> location, IntUnaryOperator count) {
+		return new InvertedIndex.QueryResult(location.apply(id), matches[id], count.applyAsInt(id), scores[id]);
+	}
+
+	/**
+	 * Compares two location ids the same way {@link InvertedIndex.QueryResult#compareTo} compares their
+	 * results.
+	 *
+	 * @param a        the first id
+	 * @param b        the second id
+	 * @param location the location for each id
+	 * @return a negative number if {@code a} ranks first, a positive number if {@code b} ranks first
+	 */
+	private int compare(int a, int b, IntFunction<String> location) {
+		if (scores[a] != scores[b]) {
+			return Double.compare(scores[b], scores[a]);
+		}
+		if (matches[a] != matches[b]) {
+			return Integer.compare(matches[b], matches[a]);
+		}
+		return location.apply(a).compareTo(location.apply(b));
+	}
+
+	/**
+	 * Moves an id up the heap until its parent ranks after it.
+	 *
+	 * @param i        where the id is in the heap
+	 * @param location the location for each id
+	 */
+	private void siftUp(int i, IntFunction<String> location) {
+		int id = hits[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (compare(id, hits[parent], location) <= 0) {
+				break;
+			}
+			hits[i] = hits[parent];
+			i = parent;
+		}
+		hits[i] = id;
+	}
+
+	/**
+	 * Moves an id down the heap until both children rank before it.
+	 *
+	 * @param i        where the id is in the heap
+	 * @param heapSize the number of ids in the heap
+	 * @param location the location for each id
+	 */
+	private void siftDown(int i, int heapSize, IntFunction<String> location) {
+		int id = hits[i];
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && compare(hits[child + 1], hits[child], location) > 0) {
+				child++;
+			}
+			if (compare(hits[child], id, location) <= 0) {
+				break;
+			}
+			hits[i] = hits[child];
+			i = child;
+		}
+		hits[i] = id;
+	}
+
+	/**
+	 * Resets the match counts of the hit ids.
+	 */
+	private void clear() {
+		for (int i = 0; i < size; i++) {
+			matches[hits[i]] = 0;
+		}
+		size = 0;
+	}
+
+}
@@ -5,7 +5,6 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedList;
@@ -15,6 +14,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.text.StringEscapeUtils;
+
 import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
@@ -36,6 +37,9 @@ public class SearchServlet extends HttpServlet {
 	private MultiThreadedIndexBuilder builder;
 
 	private InvertedIndex index;
+
+	/** The cache of search results, shared with the query builder. */
+	private QueryCache cache;
 	/**
 	 * The number of searches
 	 */
@@ -53,11 +57,23 @@ public class SearchServlet extends HttpServlet {
 	 * @param index
 	 */
 	public SearchServlet(QueryBuilderInterface queryBuilder, InvertedIndex index, InvertedIndexBuilder builder) {
+		this(queryBuilder, index, builder, new QueryCache(index, QueryCache.DEFAULT_CAPACITY));
+	}
+
+	/**
+	 * @param queryBuilder
+	 * @param index
+	 * @param builder
+	 * @param cache        the cache of search results, shared with the query builder
+	 */
+	public SearchServlet(QueryBuilderInterface queryBuilder, InvertedIndex index, InvertedIndexBuilder builder,
+			QueryCache cache) {
 		super();
 		output = new LinkedList<>();
 		this.queryBuilder = queryBuilder;
 		this.index = index;
 		this.builder = (MultiThreadedIndexBuilder) builder;
+		this.cache = cache;
 	}
 
 	@Override
@@ -97,7 +113,7 @@ public class SearchServlet extends HttpServlet {
 		out.printf("				<div class=\"field\">%n");
 		out.printf("					<div class=\"control has-icons-left\">%n");
 		out.printf(
-				"						<input class=\"input\" type=\"text\" name=\"%s\" placeholder=\"Search something....\">%n",
+				"						<input class=\"input\" type=\"text\" name=\"%s\" placeholder=\"Search something.... (* matches any letters)\">%n",
 				"search");
 		out.printf("						<span class=\"icon is-small is-left\">%n");
 		out.printf("							<i class=\"fas fa-search\"></i>%n");
@@ -111,7 +127,9 @@ public class SearchServlet extends HttpServlet {
 				+ "		    <input type=\"radio\" name=\"answer1\">\n" + "		    Partial\n" + "		  </label>\n"
 				+ "		  <label class=\"radio\">\n" + "		    <input type=\"radio\" name=\"answer2\">\n"
 				+ "		    Exact\n" + "		  </label>\n" + "		  <label class=\"radio\">\n"
-				+ "		    <input type=\"radio\" name=\"answer3\">\n" + "		    New Crawl\n" + "		</div>");
+				+ "		    <input type=\"radio\" name=\"answer3\">\n" + "		    New Crawl\n" + "		  </label>\n"
+				+ "		  <label class=\"radio\">\n" + "		    <input type=\"radio\" name=\"answer4\">\n"
+				+ "		    Contains\n" + "		  </label>\n" + "		</div>");
 
 		out.printf("%n");
 		out.printf("%n");
@@ -185,6 +203,7 @@ public class SearchServlet extends HttpServlet {
 		String message = request.getParameter("search");
 		String answer1 = request.getParameter("answer1");
 		String answer3 = request.getParameter("answer3");
+		String answer4 = request.getParameter("answer4");
 
 		String formatString = null;
 
@@ -220,16 +239,33 @@ public class SearchServlet extends HttpServlet {
 			}
 
 			if (urlBoolean != true) {
-				SnowballStemmer stemmer = new SnowballStemmer(DEFAULT);
-				ArrayList<String> queryList = new ArrayList<String>();
-				for (String part : message.split(" ")) {
-					if (part == " ") {
-						part = "";
+				// contains finds the words anywhere inside other words, through the wildcard index
+				if (answer4 != null && answer4.contains("on") && !QueryBuilderInterface.isWildcard(message)) {
+					message = QueryBuilderInterface.contains(message);
+				}
+				// feeling lucky only needs the best result, so skip sorting the rest unless it is cached
+				boolean lucky = request.getParameter("lucky") != null;
+				Query query = Query.parse(message);
+				Collection<InvertedIndex.QueryResult> results = null;
+				if (query != null && lucky) {
+					results = this.cache.peek(query, search);
+					if (results == null) {
+						results = query.search(this.index, search, 1);
 					}
-					queryList.add((stemmer.stem(part.toLowerCase())).toString());
+				} else if (query != null) {
+					results = this.cache.search(query, search);
 				}
 
-				Collection<InvertedIndex.QueryResult> results = this.builder.search(queryList, search);
+				// a misspelled query finds nothing, so look for words a few edits away instead
+				String similar = null;
+				Query fuzzy = query == null ? null : query.fuzzy();
+				if (fuzzy != null && (results == null || results.isEmpty())) {
+					results = this.cache.search(fuzzy, search);
+					similar = String.format(
+							"					<i class=\"fas fa-quote-left has-text-grey-light\"></i> %s <i class=\"fas fa-quote-right has-text-grey-light\"></i>%n"
+									+ "					<p class=\"has-text-grey is-size-7 has-text-right\"></p>%n",
+							"The String: " + StringEscapeUtils.escapeHtml4(request.getParameter("search")) + " was not found, showing similar words");
+				}
 
 				if (results == null || results.isEmpty()) {
 					searches = 0;
@@ -238,16 +274,18 @@ public class SearchServlet extends HttpServlet {
 					formatString = String.format(
 							"					<i class=\"fas fa-quote-left has-text-grey-light\"></i> %s <i class=\"fas fa-quote-right has-text-grey-light\"></i>%n"
 									+ "					<p class=\"has-text-grey is-size-7 has-text-right\"></p>%n",
-							"The String: " + request.getParameter("search") + " was not found", getDate());
+							"The String: " + StringEscapeUtils.escapeHtml4(request.getParameter("search")) + " was not found", getDate());
 					output.add(formatString);
 
-				} else if (request.getParameter("lucky") != null) {
-					ArrayList<InvertedIndex.QueryResult> newResult = new ArrayList<>(results);
-					String location = newResult.get(0).getLocation();
+				} else if (lucky) {
+					String location = results.iterator().next().getLocation();
 					response.sendRedirect(location);
 				} else {
 					searches = 0;
 					output.clear();
+					if (similar != null) {
+						output.add(similar);
+					}
 
 					for (InvertedIndex.QueryResult result : results) {
 						String score = String.format("%.3f", result.getScore());
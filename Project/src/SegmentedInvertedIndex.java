@@ -0,0 +1,649 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Thread-safe inverted index built from immutable {@link FrozenIndex} segments, for indexes that keep
+ * growing while they are searched. Every write freezes its data into a new segment outside of any
+ * lock and then publishes a new {@link Version} of the segment list. Segments are grouped into tiers
+ * by size, and whenever a tier has {@link #MERGE_FACTOR} segments they are merged in the background
+ * on the work queue. A merged segment lands in a higher tier, so each position is only rewritten a
+ * logarithmic number of times however large the index grows.
+ *
+ * Reads never lock: they take the current version once and fan out over its segments, combining the
+ * results per location. A read therefore sees either all or none of a write, and a crawl never holds
+ * up a search. Writers only wait for each other while swapping in a new version.
+ *
+ * @author Sophia
+ *
+ */
+public class SegmentedInvertedIndex extends ThreadSafeInvertedIndex {
+
+	/**
+	 * The number of segments of the same tier that triggers a merge, and how many times larger the
+	 * segments of each tier are than those of the tier below
+	 */
+	public static final int MERGE_FACTOR = 4;
+
+	/** Held by writers while they publish a new version; readers never take it. */
+	private final Object writeLock;
+
+	/** The queue background merges run on, or {@code null} to merge right away. */
+	private final WorkQueue queue;
+
+	/** The version reads are served from. */
+	private volatile Version current;
+
+	/** Whether a background merge is queued or running. */
+	private boolean merging;
+
+	/**
+	 * Initializes an empty index.
+	 *
+	 * @param queue the queue to run background merges on, or {@code null} to merge right away
+	 */
+	public SegmentedInvertedIndex(WorkQueue queue) {
+		super();
+		this.writeLock = new Object();
+		this.queue = queue;
+		this.current = new Version(Collections.emptyList(), 0);
+		this.merging = false;
+	}
+
+	/**
+	 * Adds a single word as its own segment. Prefer the methods that add a whole location at once.
+	 */
+	@Override
+	public void add(String word, String file, Integer wordOccurence) {
+		InvertedIndex local = new InvertedIndex();
+		local.add(word, file, wordOccurence);
+		append(local.freeze());
+	}
+
+	@Override
+	public void addAll(List<String> words, String location, int start) {
+		InvertedIndex local = new InvertedIndex();
+		local.addAll(words, location, start);
+		append(local.freeze());
+	}
+
+	/**
+	 * Adds another index as a new segment. The other index must not be written to at the same time.
+	 */
+	@Override
+	public void addAll(InvertedIndex other) {
+		append(other.snapshot());
+	}
+
+	@Override
+	public void addAll(FrozenIndex other) {
+		append(other);
+	}
+
+	/**
+	 * Every write is visible as soon as it returns, so there is nothing to flush.
+	 */
+	@Override
+	public void flush() {
+		// nothing to do
+	}
+
+	/**
+	 * Merges every segment into one.
+	 */
+	@Override
+	public FrozenIndex freeze() {
+		synchronized (writeLock) {
+			return compact();
+		}
+	}
+
+	@Override
+	public FrozenIndex freeze(Path path) throws IOException {
+		synchronized (writeLock) {
+			compact().write(path);
+			FrozenIndex mapped = FrozenIndex.map(path);
+			publish(List.of(mapped));
+			return mapped;
+		}
+	}
+
+	@Override
+	public void load(Path path) throws IOException {
+		FrozenIndex loaded = FrozenIndex.map(path);
+		synchronized (writeLock) {
+			publish(List.of(loaded));
+		}
+	}
+
+	/**
+	 * Number of segments
+	 *
+	 * @return the number of segments in the current version
+	 */
+	public int segmentCount() {
+		return current.segments.size();
+	}
+
+	/**
+	 * Returns the generation of the current version, which goes up by one every time a new version is
+	 * published.
+	 *
+	 * @return the generation
+	 */
+	@Override
+	public long generation() {
+		return current.generation;
+	}
+
+	/**
+	 * Publishes a version with one more segment.
+	 *
+	 * @param segment the segment to add
+	 */
+	private void append(FrozenIndex segment) {
+		if (segment.size() == 0) {
+			return;
+		}
+		synchronized (writeLock) {
+			ArrayList<FrozenIndex> segments = new ArrayList<>(current.segments);
+			segments.add(segment);
+			publish(segments);
+			mergeIfNeeded();
+		}
+	}
+
+	/**
+	 * Publishes a new version. The caller must hold the write lock.
+	 *
+	 * @param segments the segments of the new version
+	 */
+	private void publish(List<FrozenIndex> segments) {
+		for (FrozenIndex segment : segments) {
+			segment.setPrefixBudget(prefixBudget());
+		}
+		current = new Version(Collections.unmodifiableList(segments), current.generation + 1);
+	}
+
+	/**
+	 * Changes the prefix budget of every segment, so each of them may spend that much.
+	 */
+	@Override
+	public void setPrefixBudget(long bytes) {
+		synchronized (writeLock) {
+			super.setPrefixBudget(bytes);
+			for (FrozenIndex segment : current.segments) {
+				segment.setPrefixBudget(bytes);
+			}
+		}
+	}
+
+	/**
+	 * Queues a merge if there are enough segments and no merge is pending. Without a queue the merges
+	 * happen right away. The caller must hold the write lock.
+	 */
+	private void mergeIfNeeded() {
+		if (merging) {
+			return;
+		}
+		if (queue == null) {
+			List<FrozenIndex> chosen;
+			while ((chosen = mergeable(current.segments)) != null) {
+				publish(replace(current.segments, chosen, FrozenIndex.merge(chosen)));
+			}
+		} else if (mergeable(current.segments) != null) {
+			merging = true;
+			queue.execute(new MergeTask());
+		}
+	}
+
+	/**
+	 * Picks the segments to merge next, which are {@link #MERGE_FACTOR} segments of the lowest tier
+	 * that has that many. Only merging segments of about the same size keeps a large segment from being
+	 * rewritten every time a few small ones arrive.
+	 *
+	 * @param segments the current segments
+	 * @return the segments to merge, or {@code null} if no tier is full
+	 */
+	private static List<FrozenIndex> mergeable(List<FrozenIndex> segments) {
+		ArrayList<FrozenIndex> sorted = new ArrayList<>(segments);
+		sorted.sort(Comparator.comparingInt(FrozenIndex::entries));
+		for (int i = 0; i + MERGE_FACTOR <= sorted.size(); i++) {
+			// sorted by size, so a full tier is a run of segments
+			if (tier(sorted.get(i)) == tier(sorted.get(i + MERGE_FACTOR - 1))) {
+				return new ArrayList<>(sorted.subList(i, i + MERGE_FACTOR));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the tier of a segment.
+	 *
+	 * @param segment the segment
+	 * @return the number of times its posting list entries can be divided by {@link #MERGE_FACTOR}
+	 */
+	private static int tier(FrozenIndex segment) {
+		int tier = 0;
+		for (int entries = segment.entries(); entries >= MERGE_FACTOR; entries /= MERGE_FACTOR) {
+			tier++;
+		}
+		return tier;
+	}
+
+	/**
+	 * Returns a new segment list with some segments replaced by the segment they were merged into.
+	 *
+	 * @param segments the current segments
+	 * @param chosen   the segments that were merged
+	 * @param merged   the merged segment
+	 * @return the new segment list
+	 */
+	private static List<FrozenIndex> replace(List<FrozenIndex> segments, List<FrozenIndex> chosen,
+			FrozenIndex merged) {
+		ArrayList<FrozenIndex> replaced = new ArrayList<>(segments);
+		replaced.removeAll(chosen);
+		replaced.add(merged);
+		return replaced;
+	}
+
+	/**
+	 * Replaces every segment with one merged segment. The caller must hold the write lock.
+	 *
+	 * @return the merged segment
+	 */
+	private FrozenIndex compact() {
+		List<FrozenIndex> segments = current.segments;
+		if (segments.size() == 1) {
+			return segments.get(0);
+		}
+		FrozenIndex merged = FrozenIndex.merge(segments);
+		publish(List.of(merged));
+		return merged;
+	}
+
+	/**
+	 * Returns everything in a version as a single frozen index, for methods that need a view of the
+	 * whole index rather than one search. The segments are merged the first time a version is viewed,
+	 * and the merged copy is kept until a newer version is published.
+	 *
+	 * @param version the version to view
+	 * @return the merged contents of every segment
+	 */
+	private static FrozenIndex view(Version version) {
+		List<FrozenIndex> segments = version.segments;
+		if (segments.size() == 1) {
+			return segments.get(0);
+		}
+		FrozenIndex merged = version.view;
+		if (merged == null) {
+			synchronized (version) {
+				merged = version.view;
+				if (merged == null) {
+					merged = FrozenIndex.merge(segments);
+					version.view = merged;
+				}
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Searches every segment of a version and combines the results per location.
+	 *
+	 * @param segments the segments of the version to search
+	 * @param search   the search to run on each segment
+	 * @return the unsorted results
+	 */
+	private static ArrayList<QueryResult> collect(List<FrozenIndex> segments,
+			Function<FrozenIndex, Collection<QueryResult>> search) {
+
+		// a location is normally only in one segment, but add up matches and counts in case it is not
+		HashMap<String, Integer> matches = new HashMap<>();
+		for (FrozenIndex segment : segments) {
+			for (QueryResult result : search.apply(segment)) {
+				matches.merge(result.getLocation(), result.getMatchCount(), Integer::sum);
+			}
+		}
+
+		ArrayList<QueryResult> results = new ArrayList<>(matches.size());
+		for (Map.Entry<String, Integer> entry : matches.entrySet()) {
+			String location = entry.getKey();
+			int total = 0;
+			for (FrozenIndex segment : segments) {
+				total += segment.count(location);
+			}
+			QueryResult result = new QueryResult(location);
+			result.update(entry.getValue(), total);
+			results.add(result);
+		}
+		return results;
+	}
+
+	/**
+	 * Searches the current version and sorts all of the results.
+	 *
+	 * @param queries the queries to search for
+	 * @param exact   whether to do an exact search
+	 * @return the sorted results
+	 */
+	private Collection<QueryResult> search(Collection<String> queries, boolean exact) {
+		List<FrozenIndex> segments = current.segments;
+		if (segments.size() == 1) {
+			return segments.get(0).chooseSearch(queries, exact);
+		}
+		ArrayList<QueryResult> results = collect(segments, segment -> segment.chooseSearch(queries, exact));
+		Collections.sort(results);
+		return results;
+	}
+
+	@Override
+	public List<QueryResult> search(Collection<String> queries, boolean exact, int k) {
+		List<FrozenIndex> segments = current.segments;
+		if (segments.size() == 1) {
+			return segments.get(0).search(queries, exact, k);
+		}
+		return top(collect(segments, segment -> segment.chooseSearch(queries, exact)), k);
+	}
+
+	/**
+	 * Finds close words in every segment at once, reading the segments as one sorted dictionary.
+	 */
+	@Override
+	public List<String> fuzzyTerms(String word, int maxEdits, int limit) {
+		List<FrozenIndex> segments = current.segments;
+		if (segments.size() == 1) {
+			return segments.get(0).fuzzyTerms(word, maxEdits, limit);
+		}
+		return new LevenshteinAutomaton(word, maxEdits).match(key -> {
+			String first = null;
+			for (FrozenIndex segment : segments) {
+				String found = segment.ceiling(key);
+				if (found != null && (first == null || found.compareTo(first) < 0)) {
+					first = found;
+				}
+			}
+			return first;
+		}, limit);
+	}
+
+	/**
+	 * Finds the matching words of every segment, keeping words that are in more than one segment once.
+	 */
+	@Override
+	public List<String> wildcardTerms(String pattern) {
+		List<FrozenIndex> segments = current.segments;
+		if (segments.size() == 1) {
+			return segments.get(0).wildcardTerms(pattern);
+		}
+		TreeSet<String> found = new TreeSet<>();
+		for (FrozenIndex segment : segments) {
+			found.addAll(segment.wildcardTerms(pattern));
+		}
+		return new ArrayList<>(found);
+	}
+
+	/**
+	 * Searches the only segment in parallel. Once there are more, the segments are searched one after
+	 * another the same way as {@link #search(Collection, boolean, int)}.
+	 */
+	@Override
+	public List<QueryResult> parallelSearch(Collection<String> queries, boolean exact, int k) {
+		List<FrozenIndex> segments = current.segments;
+		if (segments.size() == 1) {
+			return segments.get(0).parallelSearch(queries, exact, k);
+		}
+		return top(collect(segments, segment -> segment.chooseSearch(queries, exact)), k);
+	}
+
+	/**
+	 * Searches every segment for a phrase. A location is normally only in one segment, so a phrase is
+	 * not found across the boundary between two segments of the same location.
+	 */
+	@Override
+	public Collection<QueryResult> phraseSearch(List<String> phrase) {
+		List<FrozenIndex> segments = current.segments;
+		if (segments.size() == 1) {
+			return segments.get(0).phraseSearch(phrase);
+		}
+		ArrayList<QueryResult> results = collect(segments, segment -> segment.phraseSearch(phrase));
+		Collections.sort(results);
+		return results;
+	}
+
+	/**
+	 * Searches every segment for a Boolean query. A location is normally only in one segment, so a
+	 * location is matched against the words of each of its segments separately.
+	 */
+	@Override
+	public Collection<QueryResult> booleanSearch(BooleanQuery query, boolean exact) {
+		List<FrozenIndex> segments = current.segments;
+		if (segments.size() == 1) {
+			return segments.get(0).booleanSearch(query, exact);
+		}
+		ArrayList<QueryResult> results = collect(segments, segment -> segment.booleanSearch(query, exact));
+		Collections.sort(results);
+		return results;
+	}
+
+	@Override
+	public Collection<QueryResult> exactSearch(Collection<String> queries) {
+		return search(queries, true);
+	}
+
+	@Override
+	public Collection<QueryResult> partialSearch(Collection<String> queries) {
+		return search(queries, false);
+	}
+
+	@Override
+	FrozenIndex snapshot() {
+		return view(current);
+	}
+
+	@Override
+	public void toJson(Path path) throws IOException {
+		view(current).toJson(path);
+	}
+
+	@Override
+	public void countToJson(Path path) throws IOException {
+		view(current).countToJson(path);
+	}
+
+	@Override
+	public String toString() {
+		return view(current).toString();
+	}
+
+	/**
+	 * Counts the words of every segment without merging them. The words of each segment are sorted, so
+	 * walking all of them in order finds each word that is in more than one segment in a row.
+	 */
+	@Override
+	public int size() {
+		Version version = current;
+		List<FrozenIndex> segments = version.segments;
+		if (segments.size() == 1 || version.view != null) {
+			return view(version).size();
+		}
+
+		String[] heads = new String[segments.size()];
+		ArrayList<Iterator<String>> iterators = new ArrayList<>(segments.size());
+		PriorityQueue<Integer> next = new PriorityQueue<>(Comparator.comparing((Integer i) -> heads[i]));
+		for (int i = 0; i < segments.size(); i++) {
+			Iterator<String> words = segments.get(i).words().iterator();
+			iterators.add(words);
+			if (words.hasNext()) {
+				heads[i] = words.next();
+				next.add(i);
+			}
+		}
+
+		int size = 0;
+		String last = null;
+		while (!next.isEmpty()) {
+			int i = next.poll();
+			if (!heads[i].equals(last)) {
+				last = heads[i];
+				size++;
+			}
+			Iterator<String> words = iterators.get(i);
+			if (words.hasNext()) {
+				heads[i] = words.next();
+				next.add(i);
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public Set<String> getWords() {
+		return view(current).getWords();
+	}
+
+	@Override
+	public long postings() {
+		long total = 0;
+		for (FrozenIndex segment : current.segments) {
+			total += segment.postings();
+		}
+		return total;
+	}
+
+	@Override
+	public long postingBytes() {
+		long total = 0;
+		for (FrozenIndex segment : current.segments) {
+			total += segment.postingBytes();
+		}
+		return total;
+	}
+
+	@Override
+	public double bytesPerPosting() {
+		Version version = current;
+		long postings = 0;
+		long bytes = 0;
+		for (FrozenIndex segment : version.segments) {
+			postings += segment.postings();
+			bytes += segment.postingBytes();
+		}
+		return postings == 0 ? 0 : (double) bytes / postings;
+	}
+
+	@Override
+	public boolean contains(String word) {
+		for (FrozenIndex segment : current.segments) {
+			if (segment.contains(word)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		for (FrozenIndex segment : current.segments) {
+			if (segment.contains(word, location)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(String word, String location, int position) {
+		for (FrozenIndex segment : current.segments) {
+			if (segment.contains(word, location, position)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		TreeSet<String> found = new TreeSet<>();
+		for (FrozenIndex segment : current.segments) {
+			found.addAll(segment.getLocations(word));
+		}
+		return Collections.unmodifiableSet(found);
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String location) {
+		PositionList found = new PositionList();
+		for (FrozenIndex segment : current.segments) {
+			found.addAll(segment.getPositions(word, location));
+		}
+		return Collections.unmodifiableSet(found);
+	}
+
+	/**
+	 * An immutable list of segments, published as a whole.
+	 */
+	private static class Version {
+
+		/** The segments, which are never changed. */
+		private final List<FrozenIndex> segments;
+
+		/** How many versions were published before this one. */
+		private final long generation;
+
+		/** The merged copy of the segments, or {@code null} until it is first needed. */
+		private volatile FrozenIndex view;
+
+		/**
+		 * Initializes a version.
+		 *
+		 * @param segments   the segments
+		 * @param generation the generation
+		 */
+		public Version(List<FrozenIndex> segments, long generation) {
+			this.segments = segments;
+			this.generation = generation;
+			this.view = null;
+		}
+
+	}
+
+	/**
+	 * Merges the segments of a full tier into one, then queues another merge if a tier is still full.
+	 */
+	private class MergeTask implements Runnable {
+
+		@Override
+		public void run() {
+			List<FrozenIndex> chosen = mergeable(current.segments);
+
+			// the merge runs outside the lock, and searches keep using the old version meanwhile
+			FrozenIndex merged = null;
+			try {
+				merged = chosen == null ? null : FrozenIndex.merge(chosen);
+			} finally {
+				synchronized (writeLock) {
+					merging = false;
+					// a full compaction may have replaced the segments in the meantime
+					if (merged != null && current.segments.containsAll(chosen)) {
+						publish(replace(current.segments, chosen, merged));
+					}
+					mergeIfNeeded();
+				}
+			}
+		}
+
+	}
+
+}
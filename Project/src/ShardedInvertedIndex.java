@@ -0,0 +1,840 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Thread-safe inverted index that spreads the words over several independently locked shards, so
+ * builder threads working on different words do not wait for each other. Every word lives in
+ * exactly one shard, chosen by its hash, and the word count of every location is kept in a
+ * {@link ConcurrentHashMap} shared by all shards.
+ *
+ * Freezing merges the shards into one {@link FrozenIndex} that reads are served from until the
+ * next write.
+ *
+ * @author Sophia
+ *
+ */
+public class ShardedInvertedIndex extends ThreadSafeInvertedIndex {
+
+	/** The default number of shards. */
+	public static final int DEFAULT_SHARDS = 16;
+
+	/** The shards. */
+	private final InvertedIndex[] shards;
+
+	/** The lock of each shard. */
+	private final SimpleReadWriteLock[] locks;
+
+	/** The word count of every location, across all shards. */
+	private final ConcurrentHashMap<String, Integer> counts;
+
+	/** The merged copy reads are served from after {@link #freeze()}, or {@code null}. */
+	private volatile FrozenIndex frozen;
+
+	/**
+	 * Initializes an empty index.
+	 *
+	 * @param shards the number of shards
+	 */
+	public ShardedInvertedIndex(int shards) {
+		super();
+		this.shards = new InvertedIndex[shards];
+		this.locks = new SimpleReadWriteLock[shards];
+		for (int i = 0; i < shards; i++) {
+			this.shards[i] = new InvertedIndex();
+			this.locks[i] = new SimpleReadWriteLock();
+		}
+		this.counts = new ConcurrentHashMap<>();
+		this.frozen = null;
+	}
+
+	/**
+	 * Initializes an empty index with the default number of shards.
+	 */
+	public ShardedInvertedIndex() {
+		this(DEFAULT_SHARDS);
+	}
+
+	/**
+	 * Number of shards
+	 *
+	 * @return the number of shards
+	 */
+	public int shards() {
+		return shards.length;
+	}
+
+	/**
+	 * Returns the shard a word belongs to.
+	 *
+	 * @param word the word
+	 * @return the index of its shard
+	 */
+	private int shardOf(String word) {
+		return Math.floorMod(word.hashCode(), shards.length);
+	}
+
+	@Override
+	public void add(String word, String file, Integer wordOccurence) {
+		int s = shardOf(word);
+		lockForWrite(s);
+		try {
+			int before = shards[s].count(file);
+			shards[s].add(word, file, wordOccurence);
+			// counted before the lock is released, so no search sees the word without its count
+			counts.merge(file, shards[s].count(file) - before, Integer::sum);
+		} finally {
+			locks[s].writeLock().unlock();
+		}
+		changed();
+	}
+
+	/**
+	 * Splits the words by shard first, so each shard is locked once for the whole location.
+	 */
+	@Override
+	public void addAll(List<String> words, String location, int start) {
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		ArrayList<String>[] buckets = new ArrayList[shards.length];
+		int[][] positions = new int[shards.length][];
+		int[] sizes = new int[shards.length];
+		int position = start;
+		for (String word : words) {
+			int s = shardOf(word);
+			if (buckets[s] == null) {
+				buckets[s] = new ArrayList<>();
+				positions[s] = new int[16];
+			} else if (sizes[s] == positions[s].length) {
+				positions[s] = Arrays.copyOf(positions[s], sizes[s] * 2);
+			}
+			buckets[s].add(word);
+			positions[s][sizes[s]++] = position++;
+		}
+
+		for (int s = 0; s < shards.length; s++) {
+			if (buckets[s] == null) {
+				continue;
+			}
+			lockForWrite(s);
+			try {
+				int before = shards[s].count(location);
+				for (int i = 0; i < sizes[s]; i++) {
+					shards[s].add(buckets[s].get(i), location, positions[s][i]);
+				}
+				counts.merge(location, shards[s].count(location) - before, Integer::sum);
+			} finally {
+				locks[s].writeLock().unlock();
+			}
+		}
+		changed();
+	}
+
+	@Override
+	public void addAll(InvertedIndex other) {
+		distribute(other);
+		changed();
+	}
+
+	@Override
+	public void addAll(FrozenIndex other) {
+		addAll(new InvertedIndex(other));
+	}
+
+	/**
+	 * Adds every word of another index to its shard, counting the new positions of each location while
+	 * the shard is still locked so no search sees a word without its count.
+	 *
+	 * @param other the index to add
+	 */
+	private void distribute(InvertedIndex other) {
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		ArrayList<String>[] buckets = new ArrayList[shards.length];
+		for (String word : other.getWords()) {
+			int s = shardOf(word);
+			if (buckets[s] == null) {
+				buckets[s] = new ArrayList<>();
+			}
+			buckets[s].add(word);
+		}
+
+		for (int s = 0; s < shards.length; s++) {
+			if (buckets[s] == null) {
+				continue;
+			}
+			lockForWrite(s);
+			try {
+				InvertedIndex shard = shards[s];
+				for (String word : buckets[s]) {
+					for (String location : other.getLocations(word)) {
+						int before = shard.count(location);
+						for (int position : other.getPositions(word, location)) {
+							shard.add(word, location, position);
+						}
+						counts.merge(location, shard.count(location) - before, Integer::sum);
+					}
+				}
+			} finally {
+				locks[s].writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Takes the write lock of a shard, first moving the frozen data back into the shards if the index
+	 * is frozen.
+	 *
+	 * @param s the index of the shard
+	 */
+	private void lockForWrite(int s) {
+		while (true) {
+			locks[s].writeLock().lock();
+			if (frozen == null) {
+				return;
+			}
+			locks[s].writeLock().unlock();
+			thaw();
+		}
+	}
+
+	/**
+	 * Takes the write lock of every shard, in order.
+	 */
+	private void lockAll() {
+		for (SimpleReadWriteLock lock : locks) {
+			lock.writeLock().lock();
+		}
+	}
+
+	/**
+	 * Releases the write lock of every shard.
+	 */
+	private void unlockAll() {
+		for (int s = locks.length - 1; s >= 0; s--) {
+			locks[s].writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Moves the frozen data back into the shards so the index can be written to again.
+	 */
+	private void thaw() {
+		lockAll();
+		try {
+			FrozenIndex snapshot = frozen;
+			if (snapshot == null) {
+				return;
+			}
+			InvertedIndex source = new InvertedIndex(snapshot);
+			for (String word : source.getWords()) {
+				InvertedIndex shard = shards[shardOf(word)];
+				for (String location : source.getLocations(word)) {
+					for (int position : source.getPositions(word, location)) {
+						shard.add(word, location, position);
+					}
+				}
+			}
+			frozen = null;
+		} finally {
+			unlockAll();
+		}
+	}
+
+	/**
+	 * Merges the shards into one frozen index. The caller must hold every write lock.
+	 *
+	 * @return the merged index
+	 */
+	private FrozenIndex merge() {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot;
+		}
+		ArrayList<FrozenIndex> frozenShards = new ArrayList<>(shards.length);
+		for (InvertedIndex shard : shards) {
+			frozenShards.add(shard.snapshot());
+		}
+		return FrozenIndex.merge(frozenShards);
+	}
+
+	/**
+	 * Replaces the shards with a frozen index. The caller must hold every write lock.
+	 *
+	 * @param merged the frozen index to serve reads from
+	 */
+	private void publish(FrozenIndex merged) {
+		// set the frozen copy before clearing the shards, so readers that find a shard empty see it
+		merged.setPrefixBudget(prefixBudget());
+		frozen = merged;
+		for (int s = 0; s < shards.length; s++) {
+			shards[s] = new InvertedIndex();
+			shards[s].setPrefixBudget(prefixBudget());
+		}
+	}
+
+	/**
+	 * Changes the prefix budget of every shard and of the frozen copy, so each of them may spend that
+	 * much.
+	 */
+	@Override
+	public void setPrefixBudget(long bytes) {
+		lockAll();
+		try {
+			super.setPrefixBudget(bytes);
+			for (InvertedIndex shard : shards) {
+				shard.setPrefixBudget(bytes);
+			}
+			FrozenIndex snapshot = frozen;
+			if (snapshot != null) {
+				snapshot.setPrefixBudget(bytes);
+			}
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public FrozenIndex freeze() {
+		lockAll();
+		try {
+			FrozenIndex merged = merge();
+			publish(merged);
+			return merged;
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public FrozenIndex freeze(Path path) throws IOException {
+		lockAll();
+		try {
+			merge().write(path);
+			FrozenIndex mapped = FrozenIndex.map(path);
+			publish(mapped);
+			return mapped;
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public void load(Path path) throws IOException {
+		FrozenIndex loaded = FrozenIndex.map(path);
+		lockAll();
+		try {
+			publish(loaded);
+			counts.clear();
+			for (int id = 0; id < loaded.locationCount(); id++) {
+				counts.put(loaded.location(id), loaded.count(id));
+			}
+			changed();
+		} finally {
+			unlockAll();
+		}
+	}
+
+	/**
+	 * Reads from one shard under its read lock.
+	 *
+	 * @param <T>    the type of the result
+	 * @param s      the index of the shard
+	 * @param reader what to read
+	 * @return the result of the read
+	 */
+	private <T> T read(int s, Function<InvertedIndex, T> reader) {
+		locks[s].readLock().lock();
+		try {
+			return reader.apply(shards[s]);
+		} finally {
+			locks[s].readLock().unlock();
+		}
+	}
+
+	@Override
+	protected FrozenIndex frozen() {
+		return frozen;
+	}
+
+	@Override
+	FrozenIndex snapshot() {
+		return view();
+	}
+
+	/**
+	 * Returns everything in the index as a single frozen index.
+	 *
+	 * @return the frozen copy, or a merged copy of the shards
+	 */
+	private FrozenIndex view() {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot;
+		}
+		ArrayList<FrozenIndex> frozenShards = new ArrayList<>(shards.length);
+		for (int s = 0; s < shards.length; s++) {
+			frozenShards.add(read(s, InvertedIndex::snapshot));
+		}
+		snapshot = frozen;
+		return snapshot != null ? snapshot : FrozenIndex.merge(frozenShards);
+	}
+
+	/**
+	 * Searches the shards and scores the combined matches with the shared word counts.
+	 *
+	 * @param queries the queries to search for
+	 * @param exact   whether to do an exact search
+	 * @return the unsorted results
+	 */
+	private ArrayList<QueryResult> collect(Collection<String> queries, boolean exact) {
+		// an exact query only has to go to the shard of its word
+		List<Collection<String>> byShard = new ArrayList<>(shards.length);
+		for (int s = 0; s < shards.length; s++) {
+			byShard.add(exact ? new ArrayList<>() : queries);
+		}
+		if (exact) {
+			for (String query : queries) {
+				byShard.get(shardOf(query)).add(query);
+			}
+		}
+
+		HashMap<String, Integer> matches = new HashMap<>();
+		for (int s = 0; s < shards.length; s++) {
+			Collection<String> shardQueries = byShard.get(s);
+			if (shardQueries.isEmpty()) {
+				continue;
+			}
+			for (QueryResult result : read(s, shard -> shard.chooseSearch(shardQueries, exact))) {
+				matches.merge(result.getLocation(), result.getMatchCount(), Integer::sum);
+			}
+		}
+
+		ArrayList<QueryResult> results = new ArrayList<>(matches.size());
+		for (Map.Entry<String, Integer> entry : matches.entrySet()) {
+			QueryResult result = new QueryResult(entry.getKey());
+			result.update(entry.getValue(), counts.getOrDefault(entry.getKey(), 0));
+			results.add(result);
+		}
+		return results;
+	}
+
+	@Override
+	public Collection<QueryResult> exactSearch(Collection<String> queries) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			ArrayList<QueryResult> results = collect(queries, true);
+			snapshot = frozen;
+			if (snapshot == null) {
+				Collections.sort(results);
+				return results;
+			}
+		}
+		return snapshot.exactSearch(queries);
+	}
+
+	@Override
+	public Collection<QueryResult> partialSearch(Collection<String> queries) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			ArrayList<QueryResult> results = collect(queries, false);
+			snapshot = frozen;
+			if (snapshot == null) {
+				Collections.sort(results);
+				return results;
+			}
+		}
+		return snapshot.partialSearch(queries);
+	}
+
+	/**
+	 * Finds the locations that have a phrase. The words of a phrase are usually in different shards, so
+	 * the locations that have every word are found first and only their positions are copied out of
+	 * the shards.
+	 *
+	 * @param phrase the stemmed words of the phrase, in order
+	 * @return the unsorted results
+	 */
+	private ArrayList<QueryResult> collectPhrase(List<String> phrase) {
+		ArrayList<QueryResult> results = new ArrayList<>();
+		Set<String> candidates = null;
+		for (String word : phrase) {
+			Set<String> found = read(shardOf(word), shard -> shard.getLocations(word));
+			if (candidates == null) {
+				candidates = new HashSet<>(found);
+			} else {
+				candidates.retainAll(found);
+			}
+			if (candidates.isEmpty()) {
+				return results;
+			}
+		}
+		if (candidates == null) {
+			return results;
+		}
+
+		HashMap<String, Map<String, int[]>> positions = new HashMap<>();
+		for (String word : phrase) {
+			if (!positions.containsKey(word)) {
+				Set<String> within = candidates;
+				positions.put(word, read(shardOf(word), shard -> shard.positions(word, within)));
+			}
+		}
+
+		int[][] lists = new int[phrase.size()][];
+		candidates: for (String location : candidates) {
+			for (int i = 0; i < lists.length; i++) {
+				// a location may have been removed from a shard since the candidates were found
+				lists[i] = positions.get(phrase.get(i)).get(location);
+				if (lists[i] == null) {
+					continue candidates;
+				}
+			}
+			int found = InvertedIndex.phraseMatches(lists);
+			if (found > 0) {
+				QueryResult result = new QueryResult(location);
+				result.update(found, counts.getOrDefault(location, 0));
+				results.add(result);
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public Collection<QueryResult> phraseSearch(List<String> phrase) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			ArrayList<QueryResult> results = collectPhrase(phrase);
+			snapshot = frozen;
+			if (snapshot == null) {
+				Collections.sort(results);
+				return results;
+			}
+		}
+		return snapshot.phraseSearch(phrase);
+	}
+
+	/**
+	 * Finds the locations that match a Boolean query. Each shard has its own location ids, so the
+	 * frequencies of every word are read out of its shard and given ids that are only used by this
+	 * search. They are read rather than searched for, since a search would take this thread's
+	 * {@link ScoreAccumulator} while the query may be using it.
+	 *
+	 * @param query the query
+	 * @param exact whether words must match exactly or may match as a prefix
+	 * @return the sorted results
+	 */
+	private List<QueryResult> collectBoolean(BooleanQuery query, boolean exact) {
+		LocationDictionary dictionary = new LocationDictionary();
+		for (String location : new TreeSet<>(counts.keySet())) {
+			dictionary.add(location);
+		}
+
+		return query.search(new BooleanQuery.Source() {
+
+			@Override
+			public BooleanQuery.Postings word(String word) {
+				return postings(read(shardOf(word), shard -> shard.frequencies(word, false)), dictionary);
+			}
+
+			@Override
+			public List<BooleanQuery.Postings> prefix(String prefix) {
+				// words with the prefix can be in any shard
+				ArrayList<BooleanQuery.Postings> found = new ArrayList<>(shards.length);
+				for (int s = 0; s < shards.length; s++) {
+					found.add(postings(read(s, shard -> shard.frequencies(prefix, true)), dictionary));
+				}
+				return found;
+			}
+
+			@Override
+			public int locations() {
+				return dictionary.size();
+			}
+		}, exact, dictionary::get, id -> counts.getOrDefault(dictionary.get(id), 0));
+	}
+
+	/**
+	 * Turns the frequencies read out of one shard into postings sorted by the ids of a dictionary.
+	 *
+	 * @param found      the frequency for each location
+	 * @param dictionary the ids to use
+	 * @return the postings, leaving out locations the dictionary does not have
+	 */
+	private static BooleanQuery.Postings postings(Map<String, Integer> found, LocationDictionary dictionary) {
+		// pack each id above its frequency so sorting the longs sorts by id
+		long[] packed = new long[found.size()];
+		int size = 0;
+		for (Map.Entry<String, Integer> entry : found.entrySet()) {
+			int id = dictionary.find(entry.getKey());
+			if (id >= 0) {
+				packed[size++] = ((long) id << 32) | entry.getValue();
+			}
+		}
+		Arrays.sort(packed, 0, size);
+
+		int[] ids = new int[size];
+		int[] frequencies = new int[size];
+		for (int i = 0; i < size; i++) {
+			ids[i] = (int) (packed[i] >>> 32);
+			frequencies[i] = (int) packed[i];
+		}
+		return new BooleanQuery.ArrayPostings(ids, frequencies, size);
+	}
+
+	@Override
+	public Collection<QueryResult> booleanSearch(BooleanQuery query, boolean exact) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			List<QueryResult> results = collectBoolean(query, exact);
+			snapshot = frozen;
+			if (snapshot == null) {
+				return results;
+			}
+		}
+		return snapshot.booleanSearch(query, exact);
+	}
+
+	@Override
+	public List<QueryResult> search(Collection<String> queries, boolean exact, int k) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			ArrayList<QueryResult> results = collect(queries, exact);
+			snapshot = frozen;
+			if (snapshot == null) {
+				return top(results, k);
+			}
+		}
+		return snapshot.search(queries, exact, k);
+	}
+
+	/**
+	 * Finds close words in every shard at once, reading the shards as one sorted dictionary.
+	 */
+	@Override
+	public List<String> fuzzyTerms(String word, int maxEdits, int limit) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			List<String> found = new LevenshteinAutomaton(word, maxEdits).match(this::ceiling, limit);
+			snapshot = frozen;
+			if (snapshot == null) {
+				return found;
+			}
+		}
+		return snapshot.fuzzyTerms(word, maxEdits, limit);
+	}
+
+	/**
+	 * Finds the matching words of every shard. Each word lives in exactly one shard, so the lists only
+	 * need to be put back in order.
+	 */
+	@Override
+	public List<String> wildcardTerms(String pattern) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			ArrayList<String> found = new ArrayList<>();
+			for (int s = 0; s < shards.length; s++) {
+				found.addAll(read(s, shard -> shard.wildcardTerms(pattern)));
+			}
+			snapshot = frozen;
+			if (snapshot == null) {
+				Collections.sort(found);
+				return found;
+			}
+		}
+		return snapshot.wildcardTerms(pattern);
+	}
+
+	/**
+	 * Returns the first word in any shard that is not less than a string.
+	 */
+	@Override
+	String ceiling(String key) {
+		String first = null;
+		for (int s = 0; s < shards.length; s++) {
+			String found = read(s, shard -> shard.ceiling(key));
+			if (found != null && (first == null || found.compareTo(first) < 0)) {
+				first = found;
+			}
+		}
+		return first;
+	}
+
+	@Override
+	public List<QueryResult> parallelSearch(Collection<String> queries, boolean exact, int k) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.parallelSearch(queries, exact, k);
+		}
+		return search(queries, exact, k);
+	}
+
+	@Override
+	public void toJson(Path path) throws IOException {
+		view().toJson(path);
+	}
+
+	@Override
+	public void countToJson(Path path) throws IOException {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			snapshot.countToJson(path);
+			return;
+		}
+		TreeMap<String, Integer> sorted = new TreeMap<>();
+		for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+			if (entry.getValue() > 0) {
+				sorted.put(entry.getKey(), entry.getValue());
+			}
+		}
+		SimpleJsonWriter.asObject(sorted, path);
+	}
+
+	@Override
+	public String toString() {
+		return view().toString();
+	}
+
+	@Override
+	public int size() {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			int total = 0;
+			for (int s = 0; s < shards.length; s++) {
+				total += read(s, InvertedIndex::size);
+			}
+			snapshot = frozen;
+			if (snapshot == null) {
+				return total;
+			}
+		}
+		return snapshot.size();
+	}
+
+	@Override
+	public Set<String> getWords() {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			TreeSet<String> words = new TreeSet<>();
+			for (int s = 0; s < shards.length; s++) {
+				read(s, shard -> words.addAll(shard.getWords()));
+			}
+			snapshot = frozen;
+			if (snapshot == null) {
+				return Collections.unmodifiableSet(words);
+			}
+		}
+		return snapshot.getWords();
+	}
+
+	@Override
+	public long postings() {
+		FrozenIndex snapshot = frozen;
+		if (snapshot != null) {
+			return snapshot.postings();
+		}
+		long total = 0;
+		for (int count : counts.values()) {
+			total += count;
+		}
+		return total;
+	}
+
+	@Override
+	public long postingBytes() {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			long total = 0;
+			for (int s = 0; s < shards.length; s++) {
+				total += read(s, InvertedIndex::postingBytes);
+			}
+			snapshot = frozen;
+			if (snapshot == null) {
+				return total;
+			}
+		}
+		return snapshot.postingBytes();
+	}
+
+	@Override
+	public double bytesPerPosting() {
+		long postings = postings();
+		return postings == 0 ? 0 : (double) postingBytes() / postings;
+	}
+
+	@Override
+	public boolean contains(String word) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			boolean found = read(shardOf(word), shard -> shard.contains(word));
+			snapshot = frozen;
+			if (snapshot == null) {
+				return found;
+			}
+		}
+		return snapshot.contains(word);
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			boolean found = read(shardOf(word), shard -> shard.contains(word, location));
+			snapshot = frozen;
+			if (snapshot == null) {
+				return found;
+			}
+		}
+		return snapshot.contains(word, location);
+	}
+
+	@Override
+	public boolean contains(String word, String location, int position) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			boolean found = read(shardOf(word), shard -> shard.contains(word, location, position));
+			snapshot = frozen;
+			if (snapshot == null) {
+				return found;
+			}
+		}
+		return snapshot.contains(word, location, position);
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			Set<String> found = read(shardOf(word), shard -> shard.getLocations(word));
+			snapshot = frozen;
+			if (snapshot == null) {
+				return found;
+			}
+		}
+		return snapshot.getLocations(word);
+	}
+
+	@Override
+	public Set<Integer> getPositions(String word, String location) {
+		FrozenIndex snapshot = frozen;
+		if (snapshot == null) {
+			Set<Integer> found = read(shardOf(word), shard -> shard.getPositions(word, location));
+			snapshot = frozen;
+			if (snapshot == null) {
+				return found;
+			}
+		}
+		return snapshot.getPositions(word, location);
+	}
+
+}
@@ -10,7 +10,6 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 /**
  * Outputs several simple data structures in "pretty" JSON format where newlines are used to
@@ -134,8 +133,8 @@ public class SimpleJsonWriter {
 	 * @param path  path to write to
 	 * @throws IOException throws IO if necessary
 	 */
-	public static void asDoubleNestedObject(Map<String, TreeMap<String, TreeSet<Integer>>> index, Path path)
-			throws IOException {
+	public static void asDoubleNestedObject(Map<String, ? extends Map<String, ? extends Collection<Integer>>> index,
+			Path path) throws IOException {
 		// THIS CODE IS PROVIDED FOR YOU; DO NOT MODIFY
 		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
 			asDoubleNestedObject(index, writer, 0);
@@ -169,8 +168,8 @@ public class SimpleJsonWriter {
 	 * @param level    indentation on file
 	 * @throws IOException throws exception
 	 */
-	public static void asDoubleNestedObject(Map<String, TreeMap<String, TreeSet<Integer>>> elements, Writer writer,
-			int level) throws IOException {
+	public static void asDoubleNestedObject(Map<String, ? extends Map<String, ? extends Collection<Integer>>> elements,
+			Writer writer, int level) throws IOException {
 		writer.write("{");
 		Iterator<String> iter = elements.keySet().iterator();
 		if (iter.hasNext()) {
@@ -364,6 +363,20 @@ public class SimpleJsonWriter {
 		writer.write('"');
 	}
 
+	/**
+	 * Escapes the quotation marks and backslashes of text, so it can be written as a JSON string by
+	 * {@link #quote(String, Writer)}.
+	 *
+	 * @param text the text
+	 * @return the escaped text
+	 */
+	public static String escape(String text) {
+		if (text.indexOf('"') < 0 && text.indexOf('\\') < 0) {
+			return text;
+		}
+		return text.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
 	/**
 	 * Indents and then writes the element surrounded by {@code " "} quotation marks.
 	 *
@@ -423,7 +436,7 @@ public class SimpleJsonWriter {
 
 			if (iter.hasNext()) {
 				String query = iter.next();
-				quote(query, writer, 1);
+				quote(escape(query), writer, 1);
 				writer.write(": [\n");
 				queryArrayWriteOut(queries.get(query), writer);
 			}
@@ -431,7 +444,7 @@ public class SimpleJsonWriter {
 			while (iter.hasNext()) {
 				String query = iter.next();
 				indent("],\n", writer, 1);
-				quote(query, writer, 1);
+				quote(escape(query), writer, 1);
 				writer.write(": [\n");
 				queryArrayWriteOut(queries.get(query), writer);
 			}
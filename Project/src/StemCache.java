@@ -0,0 +1,233 @@
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * A bounded cache of stems shared by everything that stems words, for indexing as well as for
+ * queries. A few common words make up most of any text, so most words are stemmed once and then
+ * looked up. Each thread stems its misses with its own {@link SnowballStemmer}, since a stemmer keeps
+ * state between calls.
+ *
+ * The stems are kept in two generations. New stems go into the current generation, and once it holds
+ * half of the capacity it becomes the old generation and the old one is dropped. A word found in the
+ * old generation is moved back into the current one, so common words stay while rare ones age out.
+ * Lookups never take a lock.
+ *
+ * @author Sophia
+ *
+ */
+public class StemCache implements Stemmer {
+
+	/** The number of words kept when no capacity is given. */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/** The rough number of bytes of a map entry, including its slot in the table. */
+	private static final int ENTRY_BYTES = 40;
+
+	/** The rough number of bytes of a string besides its characters. */
+	private static final int STRING_BYTES = 40;
+
+	/** The cache used by the index builders, the query parsers and the search servlet. */
+	private static final StemCache SHARED = new StemCache(DEFAULT_CAPACITY);
+
+	/** The most words to keep. */
+	private final int capacity;
+
+	/** The stemmer of each thread. */
+	private final ThreadLocal<Stemmer> stemmers;
+
+	/** The stems added since the last generation ended. */
+	private volatile ConcurrentHashMap<String, String> current;
+
+	/** The stems of the last generation. */
+	private volatile ConcurrentHashMap<String, String> previous;
+
+	/** The number of lookups that found a stem. */
+	private final LongAdder hits;
+
+	/** The number of lookups that had to stem. */
+	private final LongAdder misses;
+
+	/** The number of words dropped when a generation ended. */
+	private final LongAdder evictions;
+
+	/**
+	 * Initializes an empty cache of English stems.
+	 *
+	 * @param capacity the most words to keep, or 0 to not cache at all
+	 */
+	public StemCache(int capacity) {
+		this(capacity, TextFileStemmer.DEFAULT);
+	}
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param capacity  the most words to keep, or 0 to not cache at all
+	 * @param algorithm the stemming algorithm
+	 */
+	public StemCache(int capacity, SnowballStemmer.ALGORITHM algorithm) {
+		this.capacity = Math.max(0, capacity);
+		this.stemmers = ThreadLocal.withInitial(() -> new SnowballStemmer(algorithm));
+		this.current = new ConcurrentHashMap<>();
+		this.previous = new ConcurrentHashMap<>();
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+	}
+
+	/**
+	 * Returns the cache shared by everything that stems words.
+	 *
+	 * @return the shared cache
+	 */
+	public static StemCache shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Returns the stem of a word, stemming it only if it is not cached.
+	 *
+	 * @param word the cleaned word
+	 * @return the stem
+	 */
+	@Override
+	public String stem(CharSequence word) {
+		String key = word.toString();
+		String stem = current.get(key);
+		if (stem != null) {
+			hits.increment();
+			return stem;
+		}
+
+		ConcurrentHashMap<String, String> old = previous;
+		stem = old.get(key);
+		if (stem != null) {
+			hits.increment();
+			put(key, stem);
+			old.remove(key);
+			return stem;
+		}
+
+		misses.increment();
+		stem = stemmers.get().stem(key).toString();
+		// most words are their own stem, so keep one copy
+		if (stem.equals(key)) {
+			stem = key;
+		}
+		put(key, stem);
+		return stem;
+	}
+
+	/**
+	 * Adds a stem to the current generation, starting a new generation if it is full.
+	 *
+	 * @param word the word
+	 * @param stem the stem
+	 */
+	private void put(String word, String stem) {
+		if (capacity == 0) {
+			return;
+		}
+		ConcurrentHashMap<String, String> stems = current;
+		stems.put(word, stem);
+		if (stems.size() >= Math.max(1, capacity / 2)) {
+			synchronized (this) {
+				// another thread may have started the new generation already
+				if (current == stems) {
+					evictions.add(previous.size());
+					previous = stems;
+					current = new ConcurrentHashMap<>();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops every cached stem and resets the counts.
+	 */
+	public synchronized void clear() {
+		current = new ConcurrentHashMap<>();
+		previous = new ConcurrentHashMap<>();
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+	}
+
+	/**
+	 * Number of cached words
+	 *
+	 * @return the number of words in both generations
+	 */
+	public int size() {
+		return current.size() + previous.size();
+	}
+
+	/**
+	 * Number of hits
+	 *
+	 * @return the number of lookups that found a stem
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Number of misses
+	 *
+	 * @return the number of lookups that had to stem
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Number of evictions
+	 *
+	 * @return the number of words dropped to make room
+	 */
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the share of lookups that were hits.
+	 *
+	 * @return the hit rate between 0 and 1
+	 */
+	public double hitRate() {
+		long hit = hits.sum();
+		long lookups = hit + misses.sum();
+		return lookups == 0 ? 0 : (double) hit / lookups;
+	}
+
+	/**
+	 * Estimates the memory used by the cached words and stems.
+	 *
+	 * @return the rough number of bytes
+	 */
+	public long bytes() {
+		long bytes = 0;
+		for (ConcurrentHashMap<String, String> stems : List.of(current, previous)) {
+			for (Map.Entry<String, String> entry : stems.entrySet()) {
+				bytes += ENTRY_BYTES + STRING_BYTES + entry.getKey().length();
+				if (entry.getValue() != entry.getKey()) {
+					bytes += STRING_BYTES + entry.getValue().length();
+				}
+			}
+		}
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"Stem cache words: %d/%d, hits: %d, misses: %d, hit rate: %.2f%%, evictions: %d, memory: %d KB",
+				size(), capacity, hits(), misses(), 100 * hitRate(), evictions(), bytes() >> 10);
+	}
+
+}
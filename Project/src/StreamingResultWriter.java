@@ -0,0 +1,309 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Writes query results to disk as each query finishes instead of keeping them all until the end.
+ * Finished queries are rendered to JSON right away and buffered in sorted order, and the buffer is
+ * spilled to a sorted run file whenever it gets large. {@link #finish(Path)} merges the runs into a
+ * file laid out exactly like {@link SimpleJsonWriter#queryWriteOut(TreeMap, Path)}, so how much is
+ * held in memory depends on the size of the buffer and not on the number of queries.
+ *
+ * @author Sophia
+ *
+ */
+public class StreamingResultWriter {
+
+	/** The number of rendered characters buffered before they are spilled to a run. */
+	public static final int DEFAULT_BUFFER = 1 << 22;
+
+	/** The most results written for each query. */
+	private final int k;
+
+	/** The number of rendered characters to buffer before spilling. */
+	private final int bufferLimit;
+
+	/** The directory the runs are written to, or {@code null} until the first spill. */
+	private Path directory;
+
+	/** The sorted runs spilled so far. */
+	private final ArrayList<Path> runs;
+
+	/** The rendered results of each query since the last spill. */
+	private final TreeMap<String, String> buffer;
+
+	/** The number of characters in {@link #buffer}. */
+	private long buffered;
+
+	/**
+	 * Initializes a writer that writes every result.
+	 */
+	public StreamingResultWriter() {
+		this(Integer.MAX_VALUE, DEFAULT_BUFFER);
+	}
+
+	/**
+	 * Initializes a writer.
+	 *
+	 * @param k           the most results to write for each query
+	 * @param bufferLimit the number of rendered characters to buffer before spilling to a run
+	 */
+	public StreamingResultWriter(int k, int bufferLimit) {
+		this.k = Math.max(0, k);
+		this.bufferLimit = Math.max(1, bufferLimit);
+		this.directory = null;
+		this.runs = new ArrayList<>();
+		this.buffer = new TreeMap<>();
+		this.buffered = 0;
+	}
+
+	/**
+	 * Writes the results of a finished query. Only the first results of a query written more than once
+	 * are kept. This is safe to call from several threads at once.
+	 *
+	 * @param query   the normalized query
+	 * @param results the sorted results
+	 * @throws IOException if a run could not be written
+	 */
+	public void write(String query, Collection<InvertedIndex.QueryResult> results) throws IOException {
+		// render outside the lock, since that is most of the work
+		StringWriter rendered = new StringWriter();
+		SimpleJsonWriter.queryArrayWriteOut(limit(results), rendered);
+		String fragment = rendered.toString();
+
+		synchronized (buffer) {
+			if (buffer.putIfAbsent(query, fragment) == null) {
+				buffered += query.length() + fragment.length();
+				if (buffered >= bufferLimit) {
+					spill();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merges everything written so far into a results file, then starts over with nothing written.
+	 *
+	 * @param path the results file
+	 * @throws IOException if the runs could not be read or the file could not be written
+	 */
+	public void finish(Path path) throws IOException {
+		synchronized (buffer) {
+			if (!buffer.isEmpty()) {
+				spill();
+			}
+
+			PriorityQueue<Run> merge = new PriorityQueue<>();
+			try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+				for (int i = 0; i < runs.size(); i++) {
+					Run run = new Run(runs.get(i), i);
+					if (run.next()) {
+						merge.add(run);
+					} else {
+						run.close();
+					}
+				}
+
+				writer.append("{\n");
+				String last = null;
+				while (!merge.isEmpty()) {
+					Run run = merge.poll();
+					// every run is sorted, so a query written more than once comes out of the runs in a row
+					if (!run.query.equals(last)) {
+						if (last != null) {
+							SimpleJsonWriter.indent("],\n", writer, 1);
+						}
+						SimpleJsonWriter.quote(SimpleJsonWriter.escape(run.query), writer, 1);
+						writer.write(": [\n");
+						writer.write(run.fragment);
+						last = run.query;
+					}
+					if (run.next()) {
+						merge.add(run);
+					} else {
+						run.close();
+					}
+				}
+				SimpleJsonWriter.indent("]\n", writer, 1);
+				writer.append("}\n");
+			} finally {
+				for (Run run : merge) {
+					run.close();
+				}
+				clear();
+			}
+		}
+	}
+
+	/**
+	 * Deletes the runs and the directory they were in. The caller must hold the lock on the buffer.
+	 *
+	 * @throws IOException if a run could not be deleted
+	 */
+	private void clear() throws IOException {
+		for (Path run : runs) {
+			Files.deleteIfExists(run);
+		}
+		runs.clear();
+		if (directory != null) {
+			Files.deleteIfExists(directory);
+			directory = null;
+		}
+	}
+
+	/**
+	 * Writes the buffer to a new sorted run and empties it. The caller must hold the lock on the
+	 * buffer.
+	 *
+	 * @throws IOException if the run could not be written
+	 */
+	private void spill() throws IOException {
+		if (directory == null) {
+			directory = Files.createTempDirectory("results");
+			directory.toFile().deleteOnExit();
+		}
+		Path run = directory.resolve("run-" + runs.size());
+		run.toFile().deleteOnExit();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+			for (Map.Entry<String, String> entry : buffer.entrySet()) {
+				writeString(out, entry.getKey());
+				writeString(out, entry.getValue());
+			}
+		}
+		runs.add(run);
+		buffer.clear();
+		buffered = 0;
+	}
+
+	/**
+	 * Returns the most results written for each query, so a search can stop once it has that many.
+	 *
+	 * @return the most results, or {@link Integer#MAX_VALUE} if every result is written
+	 */
+	public int limit() {
+		return k;
+	}
+
+	/**
+	 * Returns at most the first {@link #k} results.
+	 *
+	 * @param results the sorted results
+	 * @return the results to write
+	 */
+	private Collection<InvertedIndex.QueryResult> limit(Collection<InvertedIndex.QueryResult> results) {
+		if (results.size() <= k) {
+			return results;
+		}
+		ArrayList<InvertedIndex.QueryResult> limited = new ArrayList<>(k);
+		Iterator<InvertedIndex.QueryResult> iter = results.iterator();
+		while (limited.size() < k) {
+			limited.add(iter.next());
+		}
+		return limited;
+	}
+
+	/**
+	 * Writes a string of any length as its UTF-8 length followed by its bytes.
+	 *
+	 * @param out    the run being written
+	 * @param string the string
+	 * @throws IOException if the string could not be written
+	 */
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * One sorted run being merged, positioned on its current query.
+	 */
+	private static class Run implements Comparable<Run> {
+
+		/** The run file. */
+		private final DataInputStream in;
+
+		/** The order the run was spilled in, which breaks ties between runs. */
+		private final int order;
+
+		/** The current query. */
+		private String query;
+
+		/** The rendered results of the current query. */
+		private String fragment;
+
+		/**
+		 * Opens a run.
+		 *
+		 * @param path  the run file
+		 * @param order the order the run was spilled in
+		 * @throws IOException if the run could not be opened
+		 */
+		public Run(Path path, int order) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+			this.order = order;
+		}
+
+		/**
+		 * Moves to the next query of the run.
+		 *
+		 * @return {@code false} if the run has no more queries
+		 * @throws IOException if the run could not be read
+		 */
+		public boolean next() throws IOException {
+			int length;
+			try {
+				length = in.readInt();
+			} catch (EOFException e) {
+				return false;
+			}
+			query = readString(length);
+			fragment = readString(in.readInt());
+			return true;
+		}
+
+		/**
+		 * Reads a string written by {@link StreamingResultWriter#writeString(DataOutputStream, String)}.
+		 *
+		 * @param length the number of bytes
+		 * @return the string
+		 * @throws IOException if the run could not be read
+		 */
+		private String readString(int length) throws IOException {
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Closes the run file.
+		 *
+		 * @throws IOException if the run could not be closed
+		 */
+		public void close() throws IOException {
+			in.close();
+		}
+
+		@Override
+		public int compareTo(Run other) {
+			int compare = query.compareTo(other.query);
+			return compare != 0 ? compare : Integer.compare(order, other.order);
+		}
+
+	}
+
+}
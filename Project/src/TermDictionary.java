@@ -0,0 +1,374 @@
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact, immutable dictionary of sorted words that maps every word to a word id (its rank). The
+ * words are front-coded in blocks: the first word of each block is stored in full and every other
+ * word only stores how many characters it shares with the word before it plus the rest of its
+ * characters. Characters are written as variable-byte integers, so plain ASCII words take one byte
+ * per character that is not shared.
+ *
+ * Looking up a word or a prefix is a binary search over the first word of each block followed by a
+ * scan of at most one block. All words that start with a prefix have consecutive ids, so a prefix
+ * lookup returns a range of ids instead of a list of words.
+ *
+ * The data may live on the heap or in a mapped file; see {@link FrozenIndex#map(java.nio.file.Path)}.
+ *
+ * @author Sophia
+ *
+ */
+public class TermDictionary implements Iterable<String> {
+
+	/** The number of words in each block. */
+	public static final int BLOCK_SIZE = 16;
+
+	/** The front-coded words. */
+	private final ByteBuffer data;
+
+	/** Where each block starts in {@link #data}. */
+	private final IntBuffer blocks;
+
+	/** The number of words. */
+	private final int size;
+
+	/**
+	 * Builds a dictionary from words that are already sorted and unique.
+	 *
+	 * @param sorted the words, in {@link String#compareTo(String)} order
+	 */
+	public TermDictionary(Iterable<String> sorted) {
+		byte[] bytes = new byte[64];
+		int length = 0;
+		int count = 0;
+		int[] starts = new int[8];
+		String previous = "";
+
+		for (String word : sorted) {
+			if (bytes.length - length < 10 + 3 * word.length()) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 10 + 3 * word.length()));
+			}
+
+			int shared = 0;
+			if (count % BLOCK_SIZE == 0) {
+				if (count / BLOCK_SIZE == starts.length) {
+					starts = Arrays.copyOf(starts, starts.length * 2);
+				}
+				starts[count / BLOCK_SIZE] = length;
+			} else {
+				int limit = Math.min(previous.length(), word.length());
+				while (shared < limit && previous.charAt(shared) == word.charAt(shared)) {
+					shared++;
+				}
+				length = writeInt(bytes, length, shared);
+			}
+
+			length = writeInt(bytes, length, word.length() - shared);
+			for (int i = shared; i < word.length(); i++) {
+				length = writeInt(bytes, length, word.charAt(i));
+			}
+
+			previous = word;
+			count++;
+		}
+
+		this.data = ByteBuffer.wrap(Arrays.copyOf(bytes, length));
+		this.blocks = IntBuffer.wrap(Arrays.copyOf(starts, (count + BLOCK_SIZE - 1) / BLOCK_SIZE));
+		this.size = count;
+	}
+
+	/**
+	 * Initializes a dictionary from data that has already been front-coded, such as a mapped file.
+	 *
+	 * @param data   the front-coded words
+	 * @param blocks where each block starts
+	 * @param size   the number of words
+	 */
+	TermDictionary(ByteBuffer data, IntBuffer blocks, int size) {
+		this.data = data;
+		this.blocks = blocks;
+		this.size = size;
+	}
+
+	/**
+	 * Number of words
+	 *
+	 * @return the number of words
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the word with an id.
+	 *
+	 * @param id the word id
+	 * @return the word
+	 */
+	public String get(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException(id);
+		}
+		Reader reader = new Reader(id / BLOCK_SIZE);
+		for (int i = id % BLOCK_SIZE; i > 0; i--) {
+			reader.next();
+		}
+		return reader.next();
+	}
+
+	/**
+	 * Looks up the id of a word.
+	 *
+	 * @param word the word to look up
+	 * @return the word id, or {@code -(insertion point) - 1} if the word is not in the dictionary
+	 */
+	public int find(String word) {
+		int id = lowerBound(word, false);
+		if (id < size && compare(word, id) == 0) {
+			return id;
+		}
+		return -id - 1;
+	}
+
+	/**
+	 * Returns the first id of the words that start with a prefix.
+	 *
+	 * @param prefix the prefix
+	 * @return the first id, which is also the end of the range if no words match
+	 *
+	 * @see #prefixEnd(String)
+	 */
+	public int prefixStart(String prefix) {
+		return lowerBound(prefix, false);
+	}
+
+	/**
+	 * Returns one past the last id of the words that start with a prefix.
+	 *
+	 * @param prefix the prefix
+	 * @return the end of the range of matching ids
+	 *
+	 * @see #prefixStart(String)
+	 */
+	public int prefixEnd(String prefix) {
+		return lowerBound(prefix, true);
+	}
+
+	/**
+	 * Estimates the space used by the dictionary, which is off the heap if it is mapped.
+	 *
+	 * @return the estimated number of bytes
+	 */
+	public long sizeInBytes() {
+		return 16 + data.capacity() + 16 + 4L * blocks.capacity();
+	}
+
+	/**
+	 * Returns the front-coded words, for writing the dictionary to a file.
+	 *
+	 * @return a read-only view of the data
+	 */
+	ByteBuffer data() {
+		return data.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns where each block starts, for writing the dictionary to a file.
+	 *
+	 * @return a read-only view of the block offsets
+	 */
+	IntBuffer blocks() {
+		return blocks.asReadOnlyBuffer();
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<>() {
+
+			/** The reader for the current block. */
+			private Reader reader = null;
+
+			/** The id of the next word. */
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public String next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				if (next % BLOCK_SIZE == 0) {
+					reader = new Reader(next / BLOCK_SIZE);
+				}
+				next++;
+				return reader.next();
+			}
+		};
+	}
+
+	/**
+	 * Finds the first id whose word is not before the key. When {@code prefix} is {@code true}, words
+	 * that start with the key also count as before it, which finds the end of the prefix range.
+	 *
+	 * @param key    the word or prefix to look for
+	 * @param prefix whether words starting with the key should be skipped
+	 * @return the first id that is not before the key, or {@link #size()}
+	 */
+	private int lowerBound(String key, boolean prefix) {
+		// find the last block whose first word is before the key
+		int low = 0;
+		int high = blocks.capacity() - 1;
+		int block = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (before(new Reader(mid), key, prefix)) {
+				block = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+
+		if (block < 0) {
+			return 0;
+		}
+
+		// the answer is within the rest of that block
+		Reader reader = new Reader(block);
+		int id = block * BLOCK_SIZE;
+		int end = Math.min(size, id + BLOCK_SIZE);
+		while (id < end && before(reader, key, prefix)) {
+			id++;
+		}
+		return id;
+	}
+
+	/**
+	 * Reads the next word from a reader and checks whether it comes before the key.
+	 *
+	 * @param reader the reader positioned at the word to check
+	 * @param key    the word or prefix to compare to
+	 * @param prefix whether words starting with the key count as before it
+	 * @return {@code true} if the word comes before the key
+	 */
+	private static boolean before(Reader reader, String key, boolean prefix) {
+		reader.advance();
+		int limit = Math.min(reader.length, key.length());
+		for (int i = 0; i < limit; i++) {
+			if (reader.chars[i] != key.charAt(i)) {
+				return reader.chars[i] < key.charAt(i);
+			}
+		}
+		return prefix || reader.length < key.length();
+	}
+
+	/**
+	 * Compares a word to the word with an id.
+	 *
+	 * @param word the word
+	 * @param id   the word id
+	 * @return the result of comparing the word to the stored word
+	 */
+	private int compare(String word, int id) {
+		return word.compareTo(get(id));
+	}
+
+	/**
+	 * Writes a value as a variable-byte integer.
+	 *
+	 * @param bytes  the array to write to
+	 * @param offset where to write
+	 * @param value  the value to write, which must not be negative
+	 * @return the offset just past the written bytes
+	 */
+	private static int writeInt(byte[] bytes, int offset, int value) {
+		while ((value & ~0x7F) != 0) {
+			bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[offset++] = (byte) value;
+		return offset;
+	}
+
+	/**
+	 * Decodes the words of one block in order, reusing a character buffer.
+	 */
+	private class Reader {
+
+		/** The offset of the next byte to read. */
+		private int offset;
+
+		/** Whether the next word is the first of its block. */
+		private boolean first;
+
+		/** The characters of the current word. */
+		private char[] chars;
+
+		/** The length of the current word. */
+		private int length;
+
+		/**
+		 * Initializes a reader at the start of a block.
+		 *
+		 * @param block the block to read
+		 */
+		public Reader(int block) {
+			this.offset = blocks.get(block);
+			this.first = true;
+			this.chars = new char[16];
+			this.length = 0;
+		}
+
+		/**
+		 * Decodes the next word into the character buffer.
+		 */
+		public void advance() {
+			int shared = first ? 0 : readInt();
+			int suffix = readInt();
+			first = false;
+
+			if (shared + suffix > chars.length) {
+				chars = Arrays.copyOf(chars, Math.max(shared + suffix, chars.length * 2));
+			}
+			for (int i = shared; i < shared + suffix; i++) {
+				chars[i] = (char) readInt();
+			}
+			length = shared + suffix;
+		}
+
+		/**
+		 * Decodes the next word.
+		 *
+		 * @return the word
+		 */
+		public String next() {
+			advance();
+			return new String(chars, 0, length);
+		}
+
+		/**
+		 * Reads a variable-byte integer.
+		 *
+		 * @return the value
+		 */
+		private int readInt() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data.get(offset++);
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+
+	}
+
+}
@@ -33,12 +33,13 @@ public class TextFileStemmer {
 	 * @return a list of cleaned and stemmed words
 	 *
 	 * @see Stemmer#stem(CharSequence)
-	 * @see TextParser#parse(String)
+	 * @see TextTokenizer
 	 */
 	public static ArrayList<String> listStems(String line, Stemmer stemmer) {
 		ArrayList<String> stemmed = new ArrayList<>();
 
-		for (String word : TextParser.parse(line)) {
+		TextTokenizer tokens = new TextTokenizer().reset(line);
+		for (String word = tokens.next(); word != null; word = tokens.next()) {
 			stemmed.add(stemmer.stem(word).toString());
 		}
 
@@ -51,13 +52,11 @@ public class TextFileStemmer {
 	 * @param line the line of words to clean, split, and stem
 	 * @return a list of cleaned and stemmed words
 	 *
-	 * @see SnowballStemmer
-	 * @see #DEFAULT
+	 * @see StemCache#shared()
 	 * @see #listStems(String, Stemmer)
 	 */
 	public static ArrayList<String> listStems(String line) {
-		// THIS IS PROVIDED FOR YOU; NO NEED TO MODIFY
-		return listStems(line, new SnowballStemmer(DEFAULT));
+		return listStems(line, StemCache.shared());
 	}
 
 	/**
@@ -68,13 +67,14 @@ public class TextFileStemmer {
 	 * @return a sorted set of unique cleaned and stemmed words
 	 *
 	 * @see Stemmer#stem(CharSequence)
-	 * @see TextParser#parse(String)
+	 * @see TextTokenizer
 	 */
 	public static TreeSet<String> uniqueStems(String line, Stemmer stemmer) {
 
 		TreeSet<String> stemmed = new TreeSet<>();
 
-		for (String word : TextParser.parse(line)) {
+		TextTokenizer tokens = new TextTokenizer().reset(line);
+		for (String word = tokens.next(); word != null; word = tokens.next()) {
 			stemmed.add(stemmer.stem(word).toString());
 		}
 		return stemmed;
@@ -87,13 +87,11 @@ public class TextFileStemmer {
 	 * @param line the line of words to clean, split, and stem
 	 * @return a sorted set of unique cleaned and stemmed words
 	 *
-	 * @see SnowballStemmer
-	 * @see #DEFAULT
+	 * @see StemCache#shared()
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static TreeSet<String> uniqueStems(String line) {
-		// THIS IS PROVIDED FOR YOU; NO NEED TO MODIFY
-		return uniqueStems(line, new SnowballStemmer(DEFAULT));
+		return uniqueStems(line, StemCache.shared());
 	}
 
 	/**
@@ -143,11 +141,12 @@ public class TextFileStemmer {
 			return null;
 		}
 
+		Stemmer stemmer = StemCache.shared();
 		try (BufferedReader reader = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8)) {
 			String line = null;
 
 			while ((line = reader.readLine()) != null) {
-				stemmed.addAll(listStems(line));
+				stemmed.addAll(listStems(line, stemmer));
 			}
 		}
 
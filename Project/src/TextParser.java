@@ -1,4 +1,5 @@
 import java.text.Normalizer;
+import java.util.ArrayList;
 import java.util.regex.Pattern;
 
 /**
@@ -41,15 +42,21 @@ public class TextParser {
 	}
 
 	/**
-	 * Cleans the text and then splits it by whitespace.
+	 * Cleans the text and then splits it by whitespace. This gives the same words as splitting the
+	 * result of {@link #clean(String)}, but scans the text once with a {@link TextTokenizer}.
 	 *
 	 * @param text the text to clean and split
 	 * @return an array of {@link String} objects
 	 *
 	 * @see #clean(String)
-	 * @see #parse(String)
+	 * @see #split(String)
 	 */
 	public static String[] parse(String text) {
-		return split(clean(text));
+		ArrayList<String> words = new ArrayList<>();
+		TextTokenizer tokens = new TextTokenizer().reset(text);
+		for (String word = tokens.next(); word != null; word = tokens.next()) {
+			words.add(word);
+		}
+		return words.toArray(new String[0]);
 	}
 }
@@ -0,0 +1,227 @@
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Splits lines into the same cleaned words as {@link TextParser#parse(String)} in a single pass,
+ * without the regular expressions and the copies of the whole line they make. The line is scanned
+ * one character at a time for runs of non-whitespace, and each run is cleaned on its own: runs of
+ * plain ASCII, which is most text, are cleaned right there, and only runs with other characters go
+ * through {@link Normalizer} to strip their diacritics. A run that is already clean is returned as a
+ * substring of the line, so the only thing allocated for it is the word itself.
+ *
+ * A tokenizer is reused for every line by calling {@link #reset(String)}, and is not thread safe.
+ *
+ * <pre>
+ * tokens.reset(line);
+ * for (String word = tokens.next(); word != null; word = tokens.next()) {
+ * 	...
+ * }
+ * </pre>
+ *
+ * @author Sophia
+ *
+ */
+public class TextTokenizer {
+
+	/** The line being split. */
+	private String text;
+
+	/** Where the scan is in the line. */
+	private int position;
+
+	/** Holds the letters of a run that has to be cleaned. */
+	private char[] buffer;
+
+	/** Whether a word has been returned for this line yet. */
+	private boolean started;
+
+	/**
+	 * Whether a space that {@link String#strip()} keeps came before the first word, in which case
+	 * {@link TextParser#parse(String)} splits off an empty word first
+	 */
+	private boolean leadingSpace;
+
+	/** A word found while an empty word was returned ahead of it, or {@code null}. */
+	private String held;
+
+	/** Whether the default locale lowercases {@code I} to something other than {@code i}. */
+	private final boolean dotlessI;
+
+	/**
+	 * Initializes a tokenizer with no line.
+	 */
+	public TextTokenizer() {
+		this.buffer = new char[64];
+		String language = Locale.getDefault().getLanguage();
+		this.dotlessI = language.equals("tr") || language.equals("az");
+		reset("");
+	}
+
+	/**
+	 * Starts splitting a new line.
+	 *
+	 * @param line the line
+	 * @return this tokenizer
+	 */
+	public TextTokenizer reset(String line) {
+		this.text = line;
+		this.position = 0;
+		this.started = false;
+		this.leadingSpace = false;
+		this.held = null;
+		return this;
+	}
+
+	/**
+	 * Returns the next cleaned word of the line.
+	 *
+	 * @return the word, or {@code null} if there are no more
+	 */
+	public String next() {
+		if (held != null) {
+			String word = held;
+			held = null;
+			return word;
+		}
+
+		int length = text.length();
+		while (position < length) {
+			char c = text.charAt(position);
+			if (isSpace(c)) {
+				if (!started && !Character.isWhitespace(c)) {
+					leadingSpace = true;
+				}
+				position++;
+				continue;
+			}
+
+			int start = position;
+			boolean ascii = true;
+			while (position < length && !isSpace(c = text.charAt(position))) {
+				ascii &= c < 0x80;
+				position++;
+			}
+			String word = ascii ? cleanAscii(start, position) : clean(start, position);
+			if (word.isEmpty()) {
+				// a run of digits or punctuation disappears, along with the space around it
+				continue;
+			}
+
+			if (!started) {
+				started = true;
+				if (leadingSpace) {
+					held = word;
+					return "";
+				}
+			}
+			return word;
+		}
+		return null;
+	}
+
+	/**
+	 * Cleans a run of ASCII characters, which are already normalized.
+	 *
+	 * @param start the first character of the run
+	 * @param end   one past the last character of the run
+	 * @return the lowercase letters of the run
+	 */
+	private String cleanAscii(int start, int end) {
+		boolean clean = true;
+		for (int i = start; i < end && clean; i++) {
+			char c = text.charAt(i);
+			clean = c >= 'a' && c <= 'z';
+		}
+		if (clean) {
+			return text.substring(start, end);
+		}
+
+		boolean upper = false;
+		char[] letters = buffer(end - start);
+		int size = 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c >= 'a' && c <= 'z') {
+				letters[size++] = c;
+			} else if (c >= 'A' && c <= 'Z') {
+				letters[size++] = (char) (c | 0x20);
+				upper |= c == 'I';
+			}
+		}
+		if (upper && dotlessI) {
+			// leave the locale rules to the library
+			return clean(start, end);
+		}
+		return new String(letters, 0, size);
+	}
+
+	/**
+	 * Cleans a run with characters outside of ASCII the same way {@link TextParser#clean(String)}
+	 * does. Spaces never decompose into anything but spaces, so the run can be normalized on its own,
+	 * but lowercasing can depend on the characters next to it.
+	 *
+	 * @param start the first character of the run
+	 * @param end   one past the last character of the run
+	 * @return the lowercase letters of the run, without diacritics
+	 */
+	private String clean(int start, int end) {
+		String normalized = Normalizer.normalize(text.subSequence(start, end), Normalizer.Form.NFD);
+		char[] letters = buffer(normalized.length());
+		int size = 0;
+		for (int i = 0; i < normalized.length();) {
+			int cp = normalized.codePointAt(i);
+			int count = Character.charCount(cp);
+			if (Character.isAlphabetic(cp)) {
+				normalized.getChars(i, i + count, letters, size);
+				size += count;
+			}
+			i += count;
+		}
+		if (size == 0) {
+			return "";
+		}
+
+		// the final sigma rule looks past the letters, so they are lowercased with the spaces around them
+		boolean before = start > 0;
+		boolean after = end < text.length();
+		StringBuilder word = new StringBuilder(size + 2);
+		if (before) {
+			word.append(text.charAt(start - 1));
+		}
+		word.append(letters, 0, size);
+		if (after) {
+			word.append(text.charAt(end));
+		}
+		String lower = word.toString().toLowerCase();
+		return lower.substring(before ? 1 : 0, after ? lower.length() - 1 : lower.length());
+	}
+
+	/**
+	 * Returns the buffer, growing it to hold at least a number of characters.
+	 *
+	 * @param size the number of characters
+	 * @return the buffer
+	 */
+	private char[] buffer(int size) {
+		if (buffer.length < size) {
+			buffer = new char[Math.max(size, buffer.length * 2)];
+		}
+		return buffer;
+	}
+
+	/**
+	 * Checks whether a character is whitespace the way {@link TextParser#SPLIT_REGEX} sees it, which
+	 * is the Unicode {@code White_Space} property.
+	 *
+	 * @param c the character
+	 * @return {@code true} if the character separates words
+	 */
+	static boolean isSpace(char c) {
+		if (c < 0x80) {
+			return c == ' ' || (c >= '\t' && c <= '\r');
+		}
+		return c == 0x85 || c == 0xA0 || c == 0x1680 || (c >= 0x2000 && c <= 0x200A) || c == 0x2028
+				|| c == 0x2029 || c == 0x202F || c == 0x205F || c == 0x3000;
+	}
+
+}
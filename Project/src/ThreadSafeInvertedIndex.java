@@ -1,9 +1,13 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 /**
+ * Thread-safe version of {@link InvertedIndex}. Once the index has been frozen, reads go straight to
+ * the immutable {@link FrozenIndex} without taking the lock.
+ *
  * @author Sophia
  *
  */
@@ -40,8 +44,63 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 
+	@Override
+	public void addAll(FrozenIndex other) {
+		lock.writeLock().lock();
+		try {
+			super.addAll(other);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void addAll(List<String> words, String location, int start) {
+		lock.writeLock().lock();
+		try {
+			super.addAll(words, location, start);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public FrozenIndex freeze() {
+		lock.writeLock().lock();
+		try {
+			return super.freeze();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public FrozenIndex freeze(Path path) throws IOException {
+		lock.writeLock().lock();
+		try {
+			return super.freeze(path);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void load(Path path) throws IOException {
+		lock.writeLock().lock();
+		try {
+			super.load(path);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
 	@Override
 	public void toJson(Path path) throws IOException {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			snapshot.toJson(path);
+			return;
+		}
 		lock.readLock().lock();
 		try {
 			super.toJson(path);
@@ -52,6 +111,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public void countToJson(Path path) throws IOException {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			snapshot.countToJson(path);
+			return;
+		}
 		lock.readLock().lock();
 		try {
 			super.countToJson(path);
@@ -62,6 +126,10 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public int size() {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.size();
+		}
 		lock.readLock().lock();
 		try {
 			return super.size();
@@ -70,8 +138,54 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 
+	@Override
+	public long postings() {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.postings();
+		}
+		lock.readLock().lock();
+		try {
+			return super.postings();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public long postingBytes() {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.postingBytes();
+		}
+		lock.readLock().lock();
+		try {
+			return super.postingBytes();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public double bytesPerPosting() {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.bytesPerPosting();
+		}
+		lock.readLock().lock();
+		try {
+			return super.bytesPerPosting();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	@Override
 	public String toString() {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.toString();
+		}
 		lock.readLock().lock();
 		try {
 			return super.toString();
@@ -82,6 +196,10 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public boolean contains(String word) {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.contains(word);
+		}
 		lock.readLock().lock();
 		try {
 			return super.contains(word);
@@ -92,6 +210,10 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public Set<String> getWords() {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.getWords();
+		}
 		lock.readLock().lock();
 		try {
 			return super.getWords();
@@ -102,6 +224,10 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public Set<String> getLocations(String word) {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.getLocations(word);
+		}
 		lock.readLock().lock();
 		try {
 			return super.getLocations(word);
@@ -112,6 +238,10 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public Set<Integer> getPositions(String word, String location) {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.getPositions(word, location);
+		}
 		lock.readLock().lock();
 		try {
 			return super.getPositions(word, location);
@@ -122,6 +252,10 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public boolean contains(String word, String location, int position) {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.contains(word, location, position);
+		}
 		lock.readLock().lock();
 		try {
 			return super.contains(word, location, position);
@@ -132,6 +266,10 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public boolean contains(String word, String location) {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.contains(word, location);
+		}
 		lock.readLock().lock();
 		try {
 			return super.contains(word, location);
@@ -142,6 +280,10 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public Collection<QueryResult> exactSearch(Collection<String> queries) {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.exactSearch(queries);
+		}
 		lock.readLock().lock();
 		try {
 			return super.exactSearch(queries);
@@ -152,6 +294,10 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 
 	@Override
 	public Collection<QueryResult> partialSearch(Collection<String> queries) {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.partialSearch(queries);
+		}
 		lock.readLock().lock();
 		try {
 			return super.partialSearch(queries);
@@ -160,4 +306,97 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 
+	@Override
+	public Collection<QueryResult> phraseSearch(List<String> phrase) {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.phraseSearch(phrase);
+		}
+		lock.readLock().lock();
+		try {
+			return super.phraseSearch(phrase);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Collection<QueryResult> booleanSearch(BooleanQuery query, boolean exact) {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.booleanSearch(query, exact);
+		}
+		lock.readLock().lock();
+		try {
+			return super.booleanSearch(query, exact);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<QueryResult> search(Collection<String> queries, boolean exact, int k) {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.search(queries, exact, k);
+		}
+		lock.readLock().lock();
+		try {
+			return super.search(queries, exact, k);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<QueryResult> parallelSearch(Collection<String> queries, boolean exact, int k) {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.parallelSearch(queries, exact, k);
+		}
+		return search(queries, exact, k);
+	}
+
+	@Override
+	public List<String> fuzzyTerms(String word, int maxEdits, int limit) {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.fuzzyTerms(word, maxEdits, limit);
+		}
+		lock.readLock().lock();
+		try {
+			return super.fuzzyTerms(word, maxEdits, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	FrozenIndex snapshot() {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot;
+		}
+		lock.readLock().lock();
+		try {
+			return super.snapshot();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<String> wildcardTerms(String pattern) {
+		FrozenIndex snapshot = frozen();
+		if (snapshot != null) {
+			return snapshot.wildcardTerms(pattern);
+		}
+		lock.readLock().lock();
+		try {
+			return super.wildcardTerms(pattern);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
 }